@@ -0,0 +1,29 @@
+#!/bin/sh
+# Builds the mod sources plus the headless bench and runs it.
+#
+# Needs a JDK 17 and the four API/library jars from starsector-core
+# (starfarer.api.jar, lwjgl.jar, lwjgl_util.jar, log4j-1.2.9.jar), copied
+# anywhere - the game itself is not launched, and no display or native
+# libraries are needed. Point LIB_DIR at them:
+#
+#   LIB_DIR=~/starsector-libs bench/run-bench.sh [rounds] [opsPerRound]
+#
+# Ends with an allocation check and exits non-zero if the plugins allocate
+# per frame; "bench/run-bench.sh check [frames]" runs only that check.
+set -e
+
+ROOT_DIR=$(cd "$(dirname "$0")/.." && pwd)
+LIB_DIR=${LIB_DIR:-"$ROOT_DIR/bench/lib"}
+OUT_DIR="$ROOT_DIR/bench/build"
+
+CP="$LIB_DIR/starfarer.api.jar:$LIB_DIR/lwjgl.jar:$LIB_DIR/lwjgl_util.jar:$LIB_DIR/log4j-1.2.9.jar"
+
+rm -rf "$OUT_DIR"
+mkdir -p "$OUT_DIR"
+
+echo "Compiling mod and bench sources..."
+javac --release 17 -Xlint:all -cp "$CP" -d "$OUT_DIR" \
+    "$ROOT_DIR"/src/tacticaloverhaul/*.java \
+    "$ROOT_DIR"/bench/src/tacticaloverhaul/*.java
+
+java -cp "$CP:$OUT_DIR" tacticaloverhaul.TacticalBench "$@"
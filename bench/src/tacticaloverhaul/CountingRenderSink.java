@@ -0,0 +1,145 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ViewportAPI;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * {@link RenderSink} that draws nothing and counts what would have been
+ * sent to GL: draw calls, vertices, and state changes (primitive type or
+ * line width / point size switching between draws, scanline texture binds)
+ * and threat map texture uploads.
+ */
+final class CountingRenderSink implements RenderSink {
+
+    long frames = 0;
+    long drawCalls = 0;
+    long vertices = 0;
+    long stateChanges = 0;
+    long uploads = 0;
+
+    // Whether the overlay may draw circles with drawRings, as with GL 2.0
+    boolean rings = true;
+
+    private int lastMode = -1;
+    private static final int RING_MODE = -2;
+    private float lastSize = -1f;
+
+    // Touch the vertex data so the work producing it can't be skipped
+    float checksum = 0f;
+
+    void reset() {
+        frames = 0;
+        drawCalls = 0;
+        vertices = 0;
+        stateChanges = 0;
+        uploads = 0;
+        checksum = 0f;
+    }
+
+    @Override
+    public void beginOverlay() {
+        frames++;
+        stateChanges += 4; // matrix push, texture off, blend on, blend func
+    }
+
+    @Override
+    public void endOverlay() {
+        stateChanges += 2;
+    }
+
+    @Override
+    public void beginBatch() {
+        stateChanges += 2;
+        lastMode = -1;
+        lastSize = -1f;
+    }
+
+    @Override
+    public void drawVertices(int mode, float size, FloatBuffer buffer, int vertexCount) {
+        if (mode != lastMode || size != lastSize) {
+            stateChanges++;
+            lastMode = mode;
+            lastSize = size;
+        }
+        drawCalls++;
+        vertices += vertexCount;
+        if (vertexCount > 0) checksum += buffer.get(0);
+    }
+
+    @Override
+    public void drawDashedLines(float width, FloatBuffer buffer, int vertexCount, float patternOffset) {
+        // Texture coordinate array, 1D texture and texture matrix on and off again
+        stateChanges += patternOffset != 0f ? 7 : 5;
+        lastMode = -1;
+        lastSize = -1f;
+        drawCalls++;
+        vertices += vertexCount;
+        if (vertexCount > 0) checksum += buffer.get(6);
+    }
+
+    @Override
+    public void drawRings(FloatBuffer buffer, int vertexCount) {
+        // Two attribute arrays and the program, on for a run of ring draws and off after it
+        if (lastMode != RING_MODE) {
+            stateChanges += 6;
+            lastMode = RING_MODE;
+            lastSize = -1f;
+        }
+        drawCalls++;
+        vertices += vertexCount;
+        if (vertexCount > 0) checksum += buffer.get(8);
+    }
+
+    @Override
+    public void drawText(FloatBuffer buffer, int vertexCount) {
+        // Texture coordinate array and 2D texture on, atlas bind, both off again
+        stateChanges += 5;
+        lastMode = -1;
+        lastSize = -1f;
+        drawCalls++;
+        vertices += vertexCount;
+        if (vertexCount > 0) checksum += buffer.get(6);
+    }
+
+    @Override
+    public boolean supportsRings() {
+        return rings;
+    }
+
+    @Override
+    public void endBatch() {
+        stateChanges += 4;
+    }
+
+    @Override
+    public void drawScanlines(ViewportAPI viewport, int color, float alpha) {
+        drawCalls++;
+        vertices += 4;
+        stateChanges += 3; // texture on, bind, texture off
+    }
+
+    @Override
+    public void drawThreatMap(ThreatMap map, float minX, float minY, float width, float height, float alpha) {
+        ByteBuffer frame = map.takeFrame();
+        if (frame != null) {
+            uploads++;
+            checksum += frame.get(3);
+            map.recycle(frame);
+        }
+        drawCalls++;
+        vertices += 4;
+        stateChanges += 3;
+    }
+
+    @Override
+    public void releaseThreatMap(ThreatMap map) {
+    }
+
+    String describePerFrame() {
+        long n = Math.max(1, frames);
+        return String.format("%d draws, %d vertices, %d state changes per frame",
+                             drawCalls / n, vertices / n, stateChanges / n);
+    }
+}
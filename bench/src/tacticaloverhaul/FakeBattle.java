@@ -0,0 +1,365 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.AssignmentTargetAPI;
+import com.fs.starfarer.api.combat.BattleObjectiveAPI;
+import com.fs.starfarer.api.combat.CombatAssignmentType;
+import com.fs.starfarer.api.combat.CombatEngineAPI;
+import com.fs.starfarer.api.combat.CombatEntityAPI;
+import com.fs.starfarer.api.combat.CombatFleetManagerAPI;
+import com.fs.starfarer.api.combat.CombatLayeredRenderingPlugin;
+import com.fs.starfarer.api.combat.CombatTaskManagerAPI;
+import com.fs.starfarer.api.combat.DeployedFleetMemberAPI;
+import com.fs.starfarer.api.combat.DerivedWeaponStatsAPI;
+import com.fs.starfarer.api.combat.FighterWingAPI;
+import com.fs.starfarer.api.combat.MutableShipStatsAPI;
+import com.fs.starfarer.api.combat.MutableStat;
+import com.fs.starfarer.api.combat.ShipAPI;
+import com.fs.starfarer.api.combat.ShipHullSpecAPI;
+import com.fs.starfarer.api.combat.ShipVariantAPI;
+import com.fs.starfarer.api.combat.StatBonus;
+import com.fs.starfarer.api.combat.ViewportAPI;
+import com.fs.starfarer.api.combat.WeaponAPI;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic battle for the headless bench: a fake combat engine, viewport,
+ * fleet managers and ships drifting across a fixed-size map.
+ *
+ * Ships are split evenly between the player (owner 0) and the enemy
+ * (owner 1). A share of them can be fighters, which are small and fast
+ * like the real thing and fly in wings of six launched from a warship on
+ * their side. Everything is seeded, so runs are repeatable.
+ */
+final class FakeBattle {
+
+    static final float MAP_WIDTH = 24000f;
+    static final float MAP_HEIGHT = 18000f;
+    static final int SCREEN_WIDTH = 1920;
+    static final int SCREEN_HEIGHT = 1080;
+
+    private static final int WING_SIZE = 6;
+    private static final float WING_SPREAD = 300f;
+
+    private static final ShipAPI.HullSize[] WARSHIP_SIZES = {
+        ShipAPI.HullSize.FRIGATE, ShipAPI.HullSize.FRIGATE, ShipAPI.HullSize.DESTROYER,
+        ShipAPI.HullSize.DESTROYER, ShipAPI.HullSize.CRUISER, ShipAPI.HullSize.CAPITAL_SHIP
+    };
+
+    final CombatEngineAPI engine;
+    final ViewportAPI viewport;
+    final List<ShipAPI> ships = new ArrayList<>();
+    final List<ShipAPI> friendlies = new ArrayList<>();
+
+    private final List<Vector2f> locations = new ArrayList<>();
+    private final List<Vector2f> velocities = new ArrayList<>();
+    private final float[] facings;
+    private final Float[] boxedFacings;
+    private final FighterWingAPI[] wings;
+
+    // Camera: lower-left corner of the view and world units per pixel
+    private float viewLLX;
+    private float viewLLY;
+    private float viewMult;
+
+    // Getter answers are boxed when they change rather than on every call,
+    // so reading the fake battle doesn't show up in allocation checks
+    private Float boxedLLX;
+    private Float boxedLLY;
+    private Float boxedViewMult;
+    private Float boxedVisibleWidth;
+    private Float boxedVisibleHeight;
+
+    private float time = 0f;
+    private Float boxedTime = 0f;
+    private CombatLayeredRenderingPlugin layeredPlugin = null;
+
+    /**
+     * @param shipCount ships on the field, fighters included
+     * @param fighterShare fraction of ships that are fighters, 0-1
+     * @param viewMult initial zoom in world units per screen pixel
+     */
+    FakeBattle(int shipCount, float fighterShare, float viewMult, long seed) {
+        Random random = new Random(seed);
+        facings = new float[shipCount];
+        boxedFacings = new Float[shipCount];
+        wings = new FighterWingAPI[shipCount];
+
+        Map<String, Fakes.Answer> viewportAnswers = new HashMap<>();
+        viewportAnswers.put("getLLX", args -> boxedLLX);
+        viewportAnswers.put("getLLY", args -> boxedLLY);
+        viewportAnswers.put("getVisibleWidth", args -> boxedVisibleWidth);
+        viewportAnswers.put("getVisibleHeight", args -> boxedVisibleHeight);
+        viewportAnswers.put("getViewMult", args -> boxedViewMult);
+        viewportAnswers.put("convertScreenXToWorldX", args -> viewLLX + (Float) args[0] * this.viewMult);
+        viewportAnswers.put("convertScreenYToWorldY", args -> viewLLY + (Float) args[0] * this.viewMult);
+        viewportAnswers.put("convertWorldXtoScreenX", args -> ((Float) args[0] - viewLLX) / this.viewMult);
+        viewportAnswers.put("convertWorldYtoScreenY", args -> ((Float) args[0] - viewLLY) / this.viewMult);
+        viewport = Fakes.fake(ViewportAPI.class, viewportAnswers);
+        setView(0f, 0f, viewMult);
+
+        for (int i = 0; i < shipCount; i++) {
+            boolean fighter = random.nextFloat() < fighterShare;
+            int owner = i % 2;
+            ShipAPI.HullSize size = fighter
+                ? ShipAPI.HullSize.FIGHTER
+                : WARSHIP_SIZES[random.nextInt(WARSHIP_SIZES.length)];
+            ShipAPI ship = createShip(i, owner, size, random);
+            ships.add(ship);
+            if (owner == 0 && !fighter) friendlies.add(ship);
+        }
+
+        for (int owner = 0; owner < 2; owner++) {
+            formWings(owner, random);
+        }
+
+        List<BattleObjectiveAPI> objectives = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Vector2f location = new Vector2f(-MAP_WIDTH * 0.4f + i * MAP_WIDTH * 0.2f, 0f);
+            int owner = i == 2 ? 100 : i / 3;
+            Map<String, Fakes.Answer> answers = new HashMap<>();
+            answers.put("getLocation", args -> location);
+            answers.put("getOwner", args -> owner);
+            objectives.add(Fakes.fake(BattleObjectiveAPI.class, answers));
+        }
+
+        Map<ShipAPI, CombatFleetManagerAPI.AssignmentInfo> assignments = new IdentityHashMap<>();
+        CombatFleetManagerAPI playerFleet = createFleetManager(assignments);
+        CombatFleetManagerAPI enemyFleet = createFleetManager(new IdentityHashMap<>());
+
+        Map<String, Fakes.Answer> engineAnswers = new HashMap<>();
+        engineAnswers.put("getShips", args -> ships);
+        engineAnswers.put("getObjectives", args -> objectives);
+        engineAnswers.put("getViewport", args -> viewport);
+        engineAnswers.put("getPlayerShip", args -> friendlies.isEmpty() ? null : friendlies.get(0));
+        engineAnswers.put("getFleetManager", args -> Integer.valueOf(0).equals(args[0]) ? playerFleet : enemyFleet);
+        Float mapWidth = MAP_WIDTH;
+        Float mapHeight = MAP_HEIGHT;
+        Float frameTime = 1f / 60f;
+        engineAnswers.put("getMapWidth", args -> mapWidth);
+        engineAnswers.put("getMapHeight", args -> mapHeight);
+        engineAnswers.put("getTotalElapsedTime", args -> boxedTime);
+        engineAnswers.put("getElapsedInLastFrame", args -> frameTime);
+        engineAnswers.put("addLayeredRenderingPlugin", args -> {
+            layeredPlugin = (CombatLayeredRenderingPlugin) args[0];
+            CombatEntityAPI entity = Fakes.fake(CombatEntityAPI.class);
+            layeredPlugin.init(entity);
+            return entity;
+        });
+        engine = Fakes.fake(CombatEngineAPI.class, engineAnswers);
+    }
+
+    void setView(float centerX, float centerY, float viewMult) {
+        this.viewMult = viewMult;
+        viewLLX = centerX - SCREEN_WIDTH * viewMult * 0.5f;
+        viewLLY = centerY - SCREEN_HEIGHT * viewMult * 0.5f;
+        boxedLLX = viewLLX;
+        boxedLLY = viewLLY;
+        boxedViewMult = viewMult;
+        boxedVisibleWidth = SCREEN_WIDTH * viewMult;
+        boxedVisibleHeight = SCREEN_HEIGHT * viewMult;
+    }
+
+    int worldToScreenX(float x) {
+        return Math.round((x - viewLLX) / viewMult);
+    }
+
+    int worldToScreenY(float y) {
+        return Math.round((y - viewLLY) / viewMult);
+    }
+
+    CombatLayeredRenderingPlugin getLayeredPlugin() {
+        return layeredPlugin;
+    }
+
+    /** Moves every ship along its velocity, bouncing off the map edges. */
+    void step(float amount) {
+        time += amount;
+        boxedTime = time;
+        float halfWidth = MAP_WIDTH * 0.5f;
+        float halfHeight = MAP_HEIGHT * 0.5f;
+
+        for (int i = 0; i < ships.size(); i++) {
+            Vector2f location = locations.get(i);
+            Vector2f velocity = velocities.get(i);
+            location.x += velocity.x * amount;
+            location.y += velocity.y * amount;
+            if (location.x < -halfWidth || location.x > halfWidth) velocity.x = -velocity.x;
+            if (location.y < -halfHeight || location.y > halfHeight) velocity.y = -velocity.y;
+            facings[i] = (facings[i] + 20f * amount) % 360f;
+            boxedFacings[i] = facings[i];
+        }
+    }
+
+    /**
+     * Puts the side's fighters into wings: members gather around the first
+     * one and fly with it, and the wing's carrier is a random warship.
+     */
+    private void formWings(int owner, Random random) {
+        List<ShipAPI> carriers = new ArrayList<>();
+        for (int i = 0; i < ships.size(); i++) {
+            ShipAPI ship = ships.get(i);
+            if (ship.getOwner() == owner && !ship.isFighter()) carriers.add(ship);
+        }
+
+        List<ShipAPI> members = null;
+        int leader = -1;
+        for (int i = 0; i < ships.size(); i++) {
+            ShipAPI ship = ships.get(i);
+            if (ship.getOwner() != owner || !ship.isFighter()) continue;
+
+            if (members == null || members.size() == WING_SIZE) {
+                members = new ArrayList<>();
+                leader = i;
+                ShipAPI carrier = carriers.isEmpty() ? null : carriers.get(random.nextInt(carriers.size()));
+                List<ShipAPI> wingMembers = members;
+                Map<String, Fakes.Answer> answers = new HashMap<>();
+                answers.put("getSourceShip", args -> carrier);
+                answers.put("getWingMembers", args -> wingMembers);
+                wings[i] = Fakes.fake(FighterWingAPI.class, answers);
+            } else {
+                wings[i] = wings[leader];
+                locations.get(i).set(locations.get(leader).x + (random.nextFloat() - 0.5f) * WING_SPREAD,
+                                     locations.get(leader).y + (random.nextFloat() - 0.5f) * WING_SPREAD);
+                velocities.get(i).set(velocities.get(leader));
+            }
+            members.add(ship);
+        }
+    }
+
+    private ShipAPI createShip(int index, int owner, ShipAPI.HullSize size, Random random) {
+        boolean fighter = size == ShipAPI.HullSize.FIGHTER;
+        float radius = fighter ? 20f : 40f + size.ordinal() * 60f;
+        float speed = fighter ? 250f : 150f - size.ordinal() * 20f;
+        float heading = random.nextFloat() * 360f;
+
+        Vector2f location = new Vector2f((random.nextFloat() - 0.5f) * MAP_WIDTH,
+                                         (random.nextFloat() - 0.5f) * MAP_HEIGHT);
+        Vector2f velocity = new Vector2f((float) Math.cos(Math.toRadians(heading)) * speed,
+                                         (float) Math.sin(Math.toRadians(heading)) * speed);
+        locations.add(location);
+        velocities.add(velocity);
+        facings[index] = heading;
+        boxedFacings[index] = heading;
+        Float boxedRadius = radius;
+        Float flux = random.nextFloat();
+        Float hullLevel = 1f;
+
+        List<WeaponAPI> weapons = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        Map<String, String> weaponIds = new HashMap<>();
+        int weaponCount = fighter ? 1 : 2 + size.ordinal() * 2;
+        for (int w = 0; w < weaponCount; w++) {
+            int rangeStep = random.nextInt(8);
+            int dpsStep = random.nextInt(6);
+            Float range = 400f + rangeStep * 100f;
+            Map<String, Fakes.Answer> statsAnswers = new HashMap<>();
+            Float dps = 50f + dpsStep * 50f;
+            String slot = "WS" + w;
+            slots.add(slot);
+            weaponIds.put(slot, "gun_" + rangeStep + "_" + dpsStep);
+            statsAnswers.put("getDps", args -> dps);
+            DerivedWeaponStatsAPI derived = Fakes.fake(DerivedWeaponStatsAPI.class, statsAnswers);
+
+            Map<String, Fakes.Answer> answers = new HashMap<>();
+            answers.put("getRange", args -> range);
+            answers.put("getDerivedStats", args -> derived);
+            weapons.add(Fakes.fake(WeaponAPI.class, answers));
+        }
+
+        String hullId = size.name().toLowerCase();
+        String variantId = hullId + "_" + (index % 12);
+        Map<String, Fakes.Answer> hullAnswers = new HashMap<>();
+        hullAnswers.put("getHullId", args -> hullId);
+        ShipHullSpecAPI hullSpec = Fakes.fake(ShipHullSpecAPI.class, hullAnswers);
+        Map<String, Fakes.Answer> variantAnswers = new HashMap<>();
+        variantAnswers.put("getHullVariantId", args -> variantId);
+        variantAnswers.put("getHullSpec", args -> hullSpec);
+        variantAnswers.put("getFittedWeaponSlots", args -> slots);
+        variantAnswers.put("getWeaponId", args -> weaponIds.get(args[0]));
+        ShipVariantAPI variant = Fakes.fake(ShipVariantAPI.class, variantAnswers);
+
+        StatBonus rangeBonus = new StatBonus();
+        MutableStat rangeThreshold = new MutableStat(Float.MAX_VALUE);
+        MutableStat rangeMultPastThreshold = new MutableStat(1f);
+        Map<String, Fakes.Answer> statsAnswers = new HashMap<>();
+        statsAnswers.put("getBallisticWeaponRangeBonus", args -> rangeBonus);
+        statsAnswers.put("getEnergyWeaponRangeBonus", args -> rangeBonus);
+        statsAnswers.put("getMissileWeaponRangeBonus", args -> rangeBonus);
+        statsAnswers.put("getBeamWeaponRangeBonus", args -> rangeBonus);
+        statsAnswers.put("getBeamPDWeaponRangeBonus", args -> rangeBonus);
+        statsAnswers.put("getNonBeamPDWeaponRangeBonus", args -> rangeBonus);
+        statsAnswers.put("getWeaponRangeThreshold", args -> rangeThreshold);
+        statsAnswers.put("getWeaponRangeMultPastThreshold", args -> rangeMultPastThreshold);
+        MutableShipStatsAPI stats = Fakes.fake(MutableShipStatsAPI.class, statsAnswers);
+
+        Map<String, Fakes.Answer> answers = new HashMap<>();
+        answers.put("getLocation", args -> location);
+        answers.put("getVelocity", args -> velocity);
+        answers.put("getFacing", args -> boxedFacings[index]);
+        answers.put("getCollisionRadius", args -> boxedRadius);
+        answers.put("getOwner", args -> owner);
+        answers.put("getHullSize", args -> size);
+        answers.put("isFighter", args -> fighter);
+        answers.put("getWing", args -> wings[index]);
+        answers.put("isAlive", args -> Boolean.TRUE);
+        answers.put("getFluxLevel", args -> flux);
+        answers.put("getHullLevel", args -> hullLevel);
+        answers.put("getAllWeapons", args -> weapons);
+        answers.put("getVariant", args -> variant);
+        answers.put("getMutableStats", args -> stats);
+        return Fakes.fake(ShipAPI.class, answers);
+    }
+
+    private static CombatFleetManagerAPI createFleetManager(Map<ShipAPI, CombatFleetManagerAPI.AssignmentInfo> given) {
+        Map<ShipAPI, DeployedFleetMemberAPI> members = new IdentityHashMap<>();
+        Map<DeployedFleetMemberAPI, ShipAPI> shipsByMember = new IdentityHashMap<>();
+
+        Map<String, Fakes.Answer> taskAnswers = new HashMap<>();
+        taskAnswers.put("createAssignment", args -> {
+            CombatAssignmentType type = (CombatAssignmentType) args[0];
+            AssignmentTargetAPI target = (AssignmentTargetAPI) args[1];
+            Map<String, Fakes.Answer> answers = new HashMap<>();
+            answers.put("getType", a -> type);
+            answers.put("getTarget", a -> target);
+            return Fakes.fake(CombatFleetManagerAPI.AssignmentInfo.class, answers);
+        });
+        taskAnswers.put("giveAssignment", args -> {
+            given.put(shipsByMember.get(args[0]), (CombatFleetManagerAPI.AssignmentInfo) args[1]);
+            return null;
+        });
+        taskAnswers.put("getAssignmentFor", args -> given.get(args[0]));
+        CombatTaskManagerAPI taskManager = Fakes.fake(CombatTaskManagerAPI.class, taskAnswers);
+
+        Fakes.Answer memberFor = args -> {
+            ShipAPI ship = (ShipAPI) args[0];
+            DeployedFleetMemberAPI member = members.get(ship);
+            if (member == null) {
+                Map<String, Fakes.Answer> answers = new HashMap<>();
+                answers.put("getShip", a -> ship);
+                member = Fakes.fake(DeployedFleetMemberAPI.class, answers);
+                members.put(ship, member);
+                shipsByMember.put(member, ship);
+            }
+            return member;
+        };
+
+        Map<String, Fakes.Answer> answers = new HashMap<>();
+        answers.put("getDeployedFleetMember", memberFor);
+        answers.put("getDeployedFleetMemberEvenIfDisabled", memberFor);
+        answers.put("getTaskManager", args -> taskManager);
+        answers.put("createWaypoint", args -> {
+            Vector2f location = new Vector2f((Vector2f) args[0]);
+            Map<String, Fakes.Answer> targetAnswers = new HashMap<>();
+            targetAnswers.put("getLocation", a -> location);
+            return Fakes.fake(AssignmentTargetAPI.class, targetAnswers);
+        });
+        return Fakes.fake(CombatFleetManagerAPI.class, answers);
+    }
+}
@@ -0,0 +1,99 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.input.InputEventAPI;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the input event list handed to the input plugin each frame.
+ * Events come from a pool and are reused, so scripting input in a timed
+ * loop does not allocate new proxies.
+ */
+final class FakeInput {
+
+    private static final int KEY_DOWN = 0;
+    private static final int MOUSE_DOWN = 1;
+    private static final int MOUSE_UP = 2;
+    private static final int MOUSE_MOVE = 3;
+
+    private static final class Event {
+        int kind;
+        int value; // key code or mouse button
+        int x;
+        int y;
+        boolean shift;
+        boolean consumed;
+        InputEventAPI proxy;
+    }
+
+    private final List<Event> pool = new ArrayList<>();
+    private final List<InputEventAPI> events = new ArrayList<>();
+
+    /** Events queued since the last {@link #clear()}. */
+    List<InputEventAPI> events() {
+        return events;
+    }
+
+    void clear() {
+        events.clear();
+    }
+
+    FakeInput keyDown(int key) {
+        return add(KEY_DOWN, key, 0, 0, false);
+    }
+
+    FakeInput mouseDown(int button, int x, int y, boolean shift) {
+        return add(MOUSE_DOWN, button, x, y, shift);
+    }
+
+    FakeInput mouseUp(int button, int x, int y, boolean shift) {
+        return add(MOUSE_UP, button, x, y, shift);
+    }
+
+    FakeInput mouseMove(int x, int y) {
+        return add(MOUSE_MOVE, 0, x, y, false);
+    }
+
+    private FakeInput add(int kind, int value, int x, int y, boolean shift) {
+        Event event = events.size() < pool.size() ? pool.get(events.size()) : createEvent();
+        event.kind = kind;
+        event.value = value;
+        event.x = x;
+        event.y = y;
+        event.shift = shift;
+        event.consumed = false;
+        events.add(event.proxy);
+        return this;
+    }
+
+    private Event createEvent() {
+        Event event = new Event();
+        Map<String, Fakes.Answer> answers = new HashMap<>();
+        answers.put("isConsumed", args -> event.consumed);
+        answers.put("consume", args -> {
+            event.consumed = true;
+            return null;
+        });
+        answers.put("isKeyDownEvent", args -> event.kind == KEY_DOWN);
+        answers.put("isKeyboardEvent", args -> event.kind == KEY_DOWN);
+        answers.put("isRepeat", args -> false);
+        answers.put("getEventValue", args -> event.value);
+        answers.put("isMouseEvent", args -> event.kind != KEY_DOWN);
+        answers.put("isMouseDownEvent", args -> event.kind == MOUSE_DOWN);
+        answers.put("isMouseUpEvent", args -> event.kind == MOUSE_UP);
+        answers.put("isMouseMoveEvent", args -> event.kind == MOUSE_MOVE);
+        answers.put("isLMBDownEvent", args -> event.kind == MOUSE_DOWN && event.value == 0);
+        answers.put("isLMBUpEvent", args -> event.kind == MOUSE_UP && event.value == 0);
+        answers.put("isRMBDownEvent", args -> event.kind == MOUSE_DOWN && event.value == 1);
+        answers.put("isRMBUpEvent", args -> event.kind == MOUSE_UP && event.value == 1);
+        answers.put("getX", args -> event.x);
+        answers.put("getY", args -> event.y);
+        answers.put("isShiftDown", args -> event.shift);
+        event.proxy = Fakes.fake(InputEventAPI.class, answers);
+        pool.add(event);
+        return event;
+    }
+}
@@ -0,0 +1,82 @@
+package tacticaloverhaul;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Proxy-backed stand-ins for Starsector API interfaces.
+ *
+ * Methods named in the answer map return whatever the answer gives; every
+ * other method returns a zero value, an empty list, or (for interface
+ * return types) another default fake that is created once and reused, so
+ * unanswered getters neither throw nor allocate per call.
+ *
+ * Calls to methods that take arguments do allocate: the proxy packs the
+ * arguments into a new array, boxing primitives. {@link #argumentCalls}
+ * counts them so allocation checks can tell that cost apart from the
+ * plugins' own.
+ */
+final class Fakes {
+
+    // Proxy calls that were passed arguments, on any fake
+    static long argumentCalls = 0;
+
+    interface Answer {
+        Object answer(Object[] args);
+    }
+
+    private Fakes() {
+    }
+
+    static <T> T fake(Class<T> type, Map<String, Answer> answers) {
+        Map<Method, Object> defaults = new HashMap<>();
+        Object proxy = Proxy.newProxyInstance(Fakes.class.getClassLoader(), new Class<?>[] {type},
+            (self, method, args) -> {
+                if (args != null) argumentCalls++;
+                String name = method.getName();
+                Answer answer = answers.get(name);
+                if (answer != null) return answer.answer(args);
+
+                switch (name) {
+                    case "equals":
+                        return self == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "toString":
+                        return "Fake" + type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(self));
+                    default:
+                        break;
+                }
+
+                Object value = defaults.get(method);
+                if (value == null && !defaults.containsKey(method)) {
+                    value = defaultValue(method.getReturnType());
+                    defaults.put(method, value);
+                }
+                return value;
+            });
+        return type.cast(proxy);
+    }
+
+    static <T> T fake(Class<T> type) {
+        return fake(type, new HashMap<>());
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == char.class) return (char) 0;
+        if (type == String.class) return "";
+        if (type.isAssignableFrom(ArrayList.class)) return new ArrayList<>();
+        if (type.isInterface()) return fake(type);
+        return null;
+    }
+}
@@ -0,0 +1,404 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.CombatEngineLayers;
+import com.fs.starfarer.api.combat.ShipAPI;
+import com.fs.starfarer.api.input.InputEventAPI;
+import org.lwjgl.input.Keyboard;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Headless benchmark for the tactical plugins.
+ *
+ * Runs the real input and render plugins against {@link FakeBattle} and a
+ * {@link CountingRenderSink}, at several battle sizes, and prints time and
+ * allocation per operation for: one input-plugin frame, one input-plugin
+ * frame plus overlay render pass (the battle moves on every frame, so slow
+ * overlay layers rebuild at their own rate as in game; zoomed in with ship
+ * labels, and once with a budget the frame-budget governor can't meet), a ship pick, a right-click order to a selected group (shared and
+ * in box formation), a box selection over the whole screen, and a
+ * recorded telemetry frame.
+ *
+ * Each measurement is warmed up, then timed over several rounds; the
+ * median round is reported.
+ *
+ * After the timings, an allocation check steps every scenario for a number
+ * of frames and fails the run (exit status 1) if the input and render
+ * plugins allocate more per frame than a small allowance. Only the calling
+ * thread is counted, so the threat map worker is left out.
+ *
+ * Usage: TacticalBench [rounds] [opsPerRound], or TacticalBench check
+ * [frames] to run only the allocation check.
+ */
+public final class TacticalBench {
+
+    private static final float FRAME = 1f / 60f;
+    private static final int SELECTED_FOR_ORDERS = 20;
+    private static final int TELEMETRY_RING_BYTES = 4 << 20;
+
+    // Allocation check: frames stepped before counting (JIT, buffer growth,
+    // governor settling) and frames counted
+    private static final int CHECK_WARMUP_FRAMES = 3000;
+    private static final int CHECK_FRAMES = 600;
+
+    // Bytes per frame the plugins may allocate on average, for the odd boxed
+    // map value when clusters or wings regroup
+    private static final long FRAME_ALLOWANCE_BYTES = 256;
+
+    // What one proxy call with arguments costs the fakes: the argument
+    // array plus a boxed primitive. Not the plugins' allocation, so allowed.
+    private static final long FAKE_ARGUMENT_CALL_BYTES = 64;
+
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private interface Op {
+        void run(int iteration);
+    }
+
+    private static final class Scenario {
+        final String name;
+        final int ships;
+        final float fighterShare;
+
+        Scenario(String name, int ships, float fighterShare) {
+            this.name = name;
+            this.ships = ships;
+            this.fighterShare = fighterShare;
+        }
+    }
+
+    private static final Scenario[] SCENARIOS = {
+        new Scenario("50 ships", 50, 0f),
+        new Scenario("200 ships", 200, 0f),
+        new Scenario("500 ships", 500, 0f),
+        new Scenario("500 ships, fighter-heavy", 500, 0.7f),
+    };
+
+    private static int rounds = 5;
+    private static int opsPerRound = 2000;
+
+    private TacticalBench() {
+    }
+
+    public static void main(String[] args) {
+        int checkFrames = CHECK_FRAMES;
+        if (args.length > 0 && args[0].equals("check")) {
+            if (args.length > 1) checkFrames = Integer.parseInt(args[1]);
+        } else {
+            if (args.length > 0) rounds = Integer.parseInt(args[0]);
+            if (args.length > 1) opsPerRound = Integer.parseInt(args[1]);
+
+            for (Scenario scenario : SCENARIOS) {
+                System.out.println("== " + scenario.name);
+                runScenario(scenario);
+            }
+        }
+
+        if (allocatedBytes() < 0) {
+            System.out.println("Allocation check: per-thread allocation counters unavailable");
+            System.exit(1);
+        }
+        System.out.println("== Allocation check, " + checkFrames + " frames");
+        boolean passed = true;
+        for (Scenario scenario : SCENARIOS) {
+            passed &= checkAllocation(scenario, checkFrames);
+        }
+        if (!passed) {
+            System.out.println("Allocation check FAILED");
+            System.exit(1);
+        }
+    }
+
+    private static void runScenario(Scenario scenario) {
+        FakeBattle battle = new FakeBattle(scenario.ships, scenario.fighterShare, 4f, 42L);
+        CountingRenderSink sink = new CountingRenderSink();
+        FakeInput input = new FakeInput();
+        List<InputEventAPI> events = input.events();
+
+        TacticalOverhaulEveryFramePlugin plugin =
+            new TacticalOverhaulEveryFramePlugin(() -> battle.engine, sink);
+        plugin.init(battle.engine);
+
+        // Enter tactical mode and let the overlay fade in
+        input.keyDown(Keyboard.KEY_GRAVE);
+        plugin.advance(FRAME, events);
+        input.clear();
+        TacticalOverhaulCombatPlugin overlay = plugin.getRenderPlugin();
+        for (int i = 0; i < 120; i++) {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+            overlay.advance(FRAME);
+        }
+
+        measure("advance", i -> {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+        });
+
+        sink.reset();
+        measure("advance + render", i -> {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+            overlay.advance(FRAME);
+            overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+        });
+        System.out.println("   render output: " + sink.describePerFrame());
+
+        // Same view without the ring shader, as on GL 1.x: circles as line segments
+        sink.rings = false;
+        sink.reset();
+        measure("advance + render, line circles", i -> {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+            overlay.advance(FRAME);
+            overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+        });
+        System.out.println("   render output: " + sink.describePerFrame());
+        sink.rings = true;
+
+        // Whole map in view: every ship folds into a cluster glyph
+        battle.setView(0f, 0f, FakeBattle.MAP_WIDTH / FakeBattle.SCREEN_WIDTH);
+        sink.reset();
+        measure("advance + render, whole map", i -> {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+            overlay.advance(FRAME);
+            overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+        });
+        System.out.println("   render output: " + sink.describePerFrame());
+
+        // Zoomed in: every ship in view gets a two-line text label
+        battle.setView(0f, 0f, 1f);
+        sink.reset();
+        measure("advance + render, labels", i -> {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+            overlay.advance(FRAME);
+            overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+        });
+        System.out.println("   render output: " + sink.describePerFrame());
+        battle.setView(0f, 0f, 4f);
+
+        // Budget far below any real frame: the governor steps detail all the way down
+        overlay.setFrameBudget(0.01f);
+        sink.reset();
+        measure("advance + render, over budget", i -> {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+            overlay.advance(FRAME);
+            overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+        });
+        System.out.println("   render output: " + sink.describePerFrame() + ", detail level " + overlay.getDetailLevel());
+        overlay.setFrameBudget(FrameBudgetGovernor.DEFAULT_BUDGET_MILLIS);
+
+        // Threat map on: submits go to the worker, frames are taken as they land
+        input.keyDown(Keyboard.KEY_H);
+        plugin.advance(FRAME, events);
+        input.clear();
+        sink.reset();
+        measure("advance + render, threat map", i -> {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+            overlay.advance(FRAME);
+            overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+        });
+        System.out.println("   render output: " + sink.describePerFrame() + ", " + sink.uploads + " map uploads");
+        input.keyDown(Keyboard.KEY_H);
+        plugin.advance(FRAME, events);
+        input.clear();
+
+        // Picking against the same index the input plugin uses
+        BattleSnapshot snapshot = new BattleSnapshot();
+        snapshot.capture(battle.engine);
+        ShipSpatialIndex index = new ShipSpatialIndex();
+        index.rebuild(snapshot);
+        float[] pickX = new float[1024];
+        float[] pickY = new float[1024];
+        Random random = new Random(7L);
+        for (int i = 0; i < pickX.length; i++) {
+            ShipAPI near = battle.ships.get(random.nextInt(battle.ships.size()));
+            pickX[i] = near.getLocation().x + (random.nextFloat() - 0.5f) * 200f;
+            pickY[i] = near.getLocation().y + (random.nextFloat() - 0.5f) * 200f;
+        }
+        measure("pick", i -> index.shipAt(pickX[i & 1023], pickY[i & 1023]));
+
+        // Telemetry: capture plus one recorded frame, into a ring small enough to wrap
+        recordTelemetry(battle, snapshot);
+
+        // Shift-click a group of friendlies, then time right-click move orders
+        int selected = Math.min(SELECTED_FOR_ORDERS, battle.friendlies.size());
+        for (int i = 0; i < selected; i++) {
+            ShipAPI ship = battle.friendlies.get(i);
+            int x = battle.worldToScreenX(ship.getLocation().x);
+            int y = battle.worldToScreenY(ship.getLocation().y);
+            input.mouseDown(0, x, y, true).mouseUp(0, x, y, true);
+            frame(plugin, input);
+        }
+
+        measure("order (" + selected + " ships)", i -> {
+            int x = 100 + (i & 511);
+            int y = 100 + ((i >> 9) & 511);
+            input.mouseDown(1, x, y, false).mouseUp(1, x, y, false);
+            frame(plugin, input);
+        });
+
+        // Same group, box formation: one waypoint per ship at its planned slot
+        for (int i = 0; i < 3; i++) {
+            input.keyDown(Keyboard.KEY_V);
+            frame(plugin, input);
+        }
+        measure("formation order", i -> {
+            int x = 100 + (i & 511);
+            int y = 100 + ((i >> 9) & 511);
+            input.mouseDown(1, x, y, false).mouseUp(1, x, y, false);
+            frame(plugin, input);
+        });
+
+        // Drag a box over the whole screen, selecting every friendly in view
+        int right = FakeBattle.SCREEN_WIDTH - 10;
+        int top = FakeBattle.SCREEN_HEIGHT - 10;
+        measure("box select", i -> {
+            input.mouseDown(0, 10, 10, false);
+            frame(plugin, input);
+            input.mouseMove(right, top);
+            frame(plugin, input);
+            input.mouseUp(0, right, top, false);
+            frame(plugin, input);
+        });
+
+        sink.reset();
+        measure("advance + render, box selected", i -> {
+            battle.step(FRAME);
+            plugin.advance(FRAME, events);
+            overlay.advance(FRAME);
+            overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+        });
+        System.out.println("   render output: " + sink.describePerFrame());
+    }
+
+    /**
+     * Steps the scenario's battle with the overlay up at a few zoom levels
+     * and returns whether the plugins' steady-state allocation per frame
+     * stayed within {@link #FRAME_ALLOWANCE_BYTES}.
+     */
+    private static boolean checkAllocation(Scenario scenario, int frames) {
+        FakeBattle battle = new FakeBattle(scenario.ships, scenario.fighterShare, 4f, 42L);
+        CountingRenderSink sink = new CountingRenderSink();
+        FakeInput input = new FakeInput();
+        List<InputEventAPI> events = input.events();
+
+        TacticalOverhaulEveryFramePlugin plugin =
+            new TacticalOverhaulEveryFramePlugin(() -> battle.engine, sink);
+        plugin.init(battle.engine);
+        input.keyDown(Keyboard.KEY_GRAVE);
+        plugin.advance(FRAME, events);
+        input.clear();
+        TacticalOverhaulCombatPlugin overlay = plugin.getRenderPlugin();
+
+        float[] viewMults = {4f, 1f, FakeBattle.MAP_WIDTH / FakeBattle.SCREEN_WIDTH};
+        String[] viewNames = {"default", "labels", "whole map"};
+        boolean passed = true;
+        for (int v = 0; v < viewMults.length; v++) {
+            battle.setView(0f, 0f, viewMults[v]);
+            for (int i = 0; i < CHECK_WARMUP_FRAMES; i++) {
+                battle.step(FRAME);
+                plugin.advance(FRAME, events);
+                overlay.advance(FRAME);
+                overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+            }
+
+            // Only the plugin calls are counted; the battle step boxes the fakes' answers
+            long allocated = 0;
+            long argumentCalls = 0;
+            for (int i = 0; i < frames; i++) {
+                battle.step(FRAME);
+                long callsBefore = Fakes.argumentCalls;
+                long before = allocatedBytes();
+                plugin.advance(FRAME, events);
+                overlay.advance(FRAME);
+                overlay.render(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER, battle.viewport);
+                allocated += allocatedBytes() - before;
+                argumentCalls += Fakes.argumentCalls - callsBefore;
+            }
+
+            double perFrame = (allocated - argumentCalls * FAKE_ARGUMENT_CALL_BYTES) / (double) frames;
+            boolean ok = perFrame <= FRAME_ALLOWANCE_BYTES;
+            passed &= ok;
+            System.out.printf("   %-26s %-10s %8.1f B/frame (%.1f fake calls/frame)  %s%n", scenario.name,
+                              viewNames[v], perFrame, argumentCalls / (double) frames, ok ? "ok" : "OVER");
+        }
+        return passed;
+    }
+
+    /** One input-plugin frame with the queued events. */
+    private static void frame(TacticalOverhaulEveryFramePlugin plugin, FakeInput input) {
+        plugin.advance(FRAME, input.events());
+        input.clear();
+    }
+
+    private static void recordTelemetry(FakeBattle battle, BattleSnapshot snapshot) {
+        File file;
+        try {
+            file = File.createTempFile("tactical-telemetry", ".bin");
+        } catch (IOException e) {
+            System.out.println("   telemetry: no temp file, skipped");
+            return;
+        }
+        file.deleteOnExit();
+
+        TelemetryRecorder recorder = new TelemetryRecorder(TELEMETRY_RING_BYTES);
+        AssignmentTracker noOrders = new AssignmentTracker(1f);
+        if (!recorder.start(file)) return;
+        measure("capture + telemetry frame", i -> {
+            battle.step(FRAME);
+            snapshot.capture(battle.engine);
+            recorder.record(snapshot, noOrders);
+        });
+        recorder.stop();
+
+        // Read it back to check the ring holds whole frames
+        int frames = 0;
+        int entries = 0;
+        try (TelemetryReader reader = new TelemetryReader(file)) {
+            while (reader.nextFrame()) {
+                frames++;
+                entries += reader.getShipCount();
+            }
+            System.out.println("   telemetry: " + reader.getRecordsWritten() + " records written, "
+                               + frames + " frames / " + entries + " ship entries still in the ring");
+        } catch (IOException e) {
+            System.out.println("   telemetry: read back failed: " + e);
+        }
+    }
+
+    private static void measure(String name, Op op) {
+        for (int i = 0; i < opsPerRound; i++) op.run(i);
+
+        double[] nanosPerOp = new double[rounds];
+        long allocatedBefore = allocatedBytes();
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < opsPerRound; i++) op.run(i);
+            nanosPerOp[r] = (System.nanoTime() - start) / (double) opsPerRound;
+        }
+        long allocatedAfter = allocatedBytes();
+
+        Arrays.sort(nanosPerOp);
+        String allocation = allocatedBefore < 0 ? "n/a"
+            : String.format("%.0f B/op", (allocatedAfter - allocatedBefore) / (double) (rounds * opsPerRound));
+        System.out.printf("   %-22s %10.1f us/op (min %.1f, max %.1f)  %s%n", name,
+                          nanosPerOp[rounds / 2] / 1000.0, nanosPerOp[0] / 1000.0,
+                          nanosPerOp[rounds - 1] / 1000.0, allocation);
+    }
+
+    private static long allocatedBytes() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) return -1L;
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,143 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.AssignmentTargetAPI;
+import com.fs.starfarer.api.combat.CombatAssignmentType;
+import com.fs.starfarer.api.combat.CombatEngineAPI;
+import com.fs.starfarer.api.combat.CombatFleetManagerAPI;
+import com.fs.starfarer.api.combat.CombatTaskManagerAPI;
+import com.fs.starfarer.api.combat.DeployedFleetMemberAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+
+import java.util.Arrays;
+
+/**
+ * Throttled view of the player fleet's current assignments, for drawing
+ * order lines.
+ *
+ * Assignments change a few times a minute, so instead of asking the fleet
+ * and task managers about every friendly ship every frame, this polls them
+ * at a low rate, or on the next frame after {@link #markDirty()} when the mod
+ * has just issued an order itself. The per-order data the renderer needs
+ * (type, target, line color) is kept between polls; only the endpoints are
+ * read each frame.
+ */
+public class AssignmentTracker {
+
+    private final float pollInterval;
+    private float timeUntilPoll = 0f;
+    private boolean dirty = true;
+
+    // Incremented whenever a poll finds a different set of orders
+    private int version = 0;
+
+    private int count = 0;
+    private ShipAPI[] ships = new ShipAPI[64];
+    private CombatAssignmentType[] types = new CombatAssignmentType[64];
+    private AssignmentTargetAPI[] targets = new AssignmentTargetAPI[64];
+
+    /**
+     * @param pollInterval seconds between polls of the task manager
+     */
+    public AssignmentTracker(float pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /** Requests a poll on the next update, e.g. right after issuing an order. */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    public void clear() {
+        Arrays.fill(ships, 0, count, null);
+        Arrays.fill(targets, 0, count, null);
+        count = 0;
+        dirty = true;
+        timeUntilPoll = 0f;
+        version++;
+    }
+
+    /**
+     * Polls the player fleet's task manager if the interval has elapsed or
+     * a poll was requested.
+     */
+    public void update(CombatEngineAPI engine, BattleSnapshot snapshot, float amount) {
+        timeUntilPoll -= amount;
+        if (!dirty && timeUntilPoll > 0f) return;
+
+        timeUntilPoll = pollInterval;
+        dirty = false;
+        poll(engine, snapshot);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public ShipAPI getShip(int index) {
+        return ships[index];
+    }
+
+    public CombatAssignmentType getType(int index) {
+        return types[index];
+    }
+
+    public AssignmentTargetAPI getTarget(int index) {
+        return targets[index];
+    }
+
+    private void poll(CombatEngineAPI engine, BattleSnapshot snapshot) {
+        CombatFleetManagerAPI fleetManager = engine.getFleetManager(0); // Player fleet
+        CombatTaskManagerAPI taskManager = fleetManager != null ? fleetManager.getTaskManager(false) : null;
+
+        int previousCount = count;
+        boolean changed = false;
+        int n = 0;
+
+        if (taskManager != null) {
+            for (int i = 0; i < snapshot.shipCount; i++) {
+                if (snapshot.owner[i] != 0 || snapshot.isFighter(i)) continue;
+
+                ShipAPI ship = snapshot.ships[i];
+                DeployedFleetMemberAPI deployed = fleetManager.getDeployedFleetMember(ship);
+                if (deployed == null) continue;
+
+                CombatFleetManagerAPI.AssignmentInfo assignment = taskManager.getAssignmentFor(ship);
+                if (assignment == null) continue;
+
+                AssignmentTargetAPI target = assignment.getTarget();
+                if (target == null) continue;
+
+                if (n == ships.length) grow();
+
+                CombatAssignmentType type = assignment.getType();
+                if (n >= previousCount || ships[n] != ship || types[n] != type || targets[n] != target) {
+                    changed = true;
+                }
+                ships[n] = ship;
+                types[n] = type;
+                targets[n] = target;
+                n++;
+            }
+        }
+
+        if (n != previousCount) changed = true;
+        for (int i = n; i < previousCount; i++) {
+            ships[i] = null;
+            targets[i] = null;
+        }
+        count = n;
+
+        if (changed) version++;
+    }
+
+    private void grow() {
+        int newSize = ships.length * 2;
+        ships = Arrays.copyOf(ships, newSize);
+        types = Arrays.copyOf(types, newSize);
+        targets = Arrays.copyOf(targets, newSize);
+    }
+}
@@ -0,0 +1,168 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.CombatEngineAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One coherent view of the battle per frame, shared by the input and render
+ * plugins.
+ *
+ * Ship state is captured once in {@link TacticalOverhaulEveryFramePlugin#advance}
+ * into parallel primitive arrays (struct-of-arrays), so the rest of the frame
+ * reads plain floats instead of calling back into the game API per ship.
+ * Hulks and shuttle pods are left out; fighters are kept and flagged.
+ *
+ * The input plugin also publishes the overlay state (mode, selection, last
+ * command, message) here, replacing per-frame setter calls on the renderer.
+ */
+public class BattleSnapshot {
+
+    public static final int FLAG_FIGHTER = 1;
+    public static final int FLAG_PLAYER_SHIP = 1 << 1;
+    public static final int FLAG_RETREATING = 1 << 2;
+    public static final int FLAG_SELECTED = 1 << 3;
+
+    private static final ShipAPI.HullSize[] HULL_SIZES = ShipAPI.HullSize.values();
+
+    // Per-ship arrays, valid for indices [0, shipCount)
+    public int shipCount = 0;
+    public ShipAPI[] ships = new ShipAPI[128];
+    public float[] x = new float[128];
+    public float[] y = new float[128];
+    public float[] vx = new float[128];
+    public float[] vy = new float[128];
+    public float[] facing = new float[128];
+    public float[] radius = new float[128];
+    public float[] flux = new float[128];
+    public float[] hull = new float[128];
+    public int[] owner = new int[128];
+    public byte[] hullSize = new byte[128];
+    public int[] flags = new int[128];
+
+    // Combat time at capture, in seconds
+    public float time = 0f;
+
+    // Overlay state published by the input plugin
+    public boolean tacticalModeActive = false;
+    public ShipSelection selection = EMPTY_SELECTION;
+    public Vector2f commandTarget = null;
+    public ShipAPI commandAttackTarget = null;
+    public boolean showCommand = false;
+    public String displayMessage = null;
+    public boolean threatMapVisible = false;
+    public OverlayPreset preset = OverlayPreset.FULL;
+
+    // Box selection in progress, in world coordinates
+    public boolean boxSelecting = false;
+    public float boxStartX = 0f;
+    public float boxStartY = 0f;
+    public float boxEndX = 0f;
+    public float boxEndY = 0f;
+
+    // Formation slots: previewed while right-click is held, then shown with the order
+    public FormationPlanner formation = null;
+    public boolean formationPreview = false;
+    public boolean formationCommand = false;
+
+    private static final ShipSelection EMPTY_SELECTION = new ShipSelection();
+
+    public void capture(CombatEngineAPI engine) {
+        List<ShipAPI> engineShips = engine.getShips();
+        ShipAPI playerShip = engine.getPlayerShip();
+        time = engine.getTotalElapsedTime(false);
+
+        Arrays.fill(ships, 0, shipCount, null);
+        shipCount = 0;
+        ensureCapacity(engineShips.size());
+
+        for (int i = 0; i < engineShips.size(); i++) {
+            ShipAPI ship = engineShips.get(i);
+            if (ship.isHulk() || ship.isShuttlePod()) continue;
+
+            int n = shipCount++;
+            Vector2f location = ship.getLocation();
+            Vector2f velocity = ship.getVelocity();
+            ships[n] = ship;
+            x[n] = location.x;
+            y[n] = location.y;
+            vx[n] = velocity.x;
+            vy[n] = velocity.y;
+            facing[n] = ship.getFacing();
+            radius[n] = ship.getCollisionRadius();
+            flux[n] = ship.getFluxLevel();
+            hull[n] = ship.getHullLevel();
+            owner[n] = ship.getOwner();
+            hullSize[n] = (byte) ship.getHullSize().ordinal();
+
+            int f = 0;
+            if (ship.isFighter()) f |= FLAG_FIGHTER;
+            if (ship == playerShip) f |= FLAG_PLAYER_SHIP;
+            if (ship.isRetreating()) f |= FLAG_RETREATING;
+            flags[n] = f;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(ships, 0, shipCount, null);
+        shipCount = 0;
+        selection = EMPTY_SELECTION;
+        boxSelecting = false;
+        formationPreview = false;
+        formationCommand = false;
+        commandTarget = null;
+        commandAttackTarget = null;
+        showCommand = false;
+        displayMessage = null;
+    }
+
+    /** Sets {@link #FLAG_SELECTED} on the captured ships that are in the selection. */
+    public void markSelected(ShipSelection selection) {
+        for (int i = 0; i < shipCount; i++) {
+            if (selection.contains(ships[i])) {
+                flags[i] |= FLAG_SELECTED;
+            } else {
+                flags[i] &= ~FLAG_SELECTED;
+            }
+        }
+    }
+
+    public boolean isSelected(int index) {
+        return (flags[index] & FLAG_SELECTED) != 0;
+    }
+
+    public ShipAPI.HullSize getHullSize(int index) {
+        return HULL_SIZES[hullSize[index]];
+    }
+
+    public boolean isFighter(int index) {
+        return (flags[index] & FLAG_FIGHTER) != 0;
+    }
+
+    public float speed(int index) {
+        return (float) Math.sqrt(vx[index] * vx[index] + vy[index] * vy[index]);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= ships.length) return;
+
+        int newSize = ships.length;
+        while (newSize < needed) newSize *= 2;
+
+        ships = Arrays.copyOf(ships, newSize);
+        x = Arrays.copyOf(x, newSize);
+        y = Arrays.copyOf(y, newSize);
+        vx = Arrays.copyOf(vx, newSize);
+        vy = Arrays.copyOf(vy, newSize);
+        facing = Arrays.copyOf(facing, newSize);
+        radius = Arrays.copyOf(radius, newSize);
+        flux = Arrays.copyOf(flux, newSize);
+        hull = Arrays.copyOf(hull, newSize);
+        owner = Arrays.copyOf(owner, newSize);
+        hullSize = Arrays.copyOf(hullSize, newSize);
+        flags = Arrays.copyOf(flags, newSize);
+    }
+}
@@ -0,0 +1,55 @@
+package tacticaloverhaul;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The dash pattern for dashed lines: a tiny repeating 1D texture, opaque
+ * for the first {@link #DASH_FRACTION} of each period and clear for the
+ * rest. A line's texture coordinate is its distance in periods, so GL
+ * repeats the pattern along it without any extra vertices.
+ *
+ * The texture is generated on first use and kept for the session.
+ */
+public final class DashTexture {
+
+    // 5 of 8 texels opaque
+    private static final int TEXTURE_WIDTH = 8;
+    private static final int DASH_TEXELS = 5;
+
+    /** Share of each pattern period that is dash rather than gap. */
+    public static final float DASH_FRACTION = (float) DASH_TEXELS / TEXTURE_WIDTH;
+
+    private static int textureId = 0;
+
+    private DashTexture() {
+    }
+
+    /** Binds the pattern to GL_TEXTURE_1D, creating it the first time. */
+    public static void bind() {
+        if (textureId == 0) {
+            textureId = createTexture();
+        }
+        GL11.glBindTexture(GL11.GL_TEXTURE_1D, textureId);
+    }
+
+    private static int createTexture() {
+        ByteBuffer pixels = BufferUtils.createByteBuffer(TEXTURE_WIDTH * 4);
+        for (int i = 0; i < TEXTURE_WIDTH; i++) {
+            byte texelAlpha = (byte) (i < DASH_TEXELS ? 255 : 0);
+            pixels.put((byte) 255).put((byte) 255).put((byte) 255).put(texelAlpha);
+        }
+        pixels.flip();
+
+        int id = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_1D, id);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_1D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_1D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_1D, GL11.GL_TEXTURE_WRAP_S, GL11.GL_REPEAT);
+        GL11.glTexImage1D(GL11.GL_TEXTURE_1D, 0, GL11.GL_RGBA, TEXTURE_WIDTH, 0,
+                          GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixels);
+        return id;
+    }
+}
@@ -0,0 +1,239 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.FighterWingAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Groups the snapshot's fighters by wing so the overlay can draw one glyph
+ * per wing instead of one per fighter.
+ *
+ * A fighter's wing never changes, so it is looked up once per fighter and
+ * kept; each wing keeps its group id for as long as it has fighters on the
+ * field. Each frame's update is a single pass over the snapshot that sums
+ * member count, centroid and spread per group. Spread is accumulated
+ * relative to the group's first member so float precision holds up far
+ * from the map center.
+ *
+ * Fighters without a wing are left ungrouped (-1).
+ */
+public class FighterWingGrouper {
+
+    // Fighter -> its wing, and wing -> group id, carried across frames
+    private final IdentityHashMap<ShipAPI, FighterWingAPI> wingOf = new IdentityHashMap<>();
+    private final IdentityHashMap<FighterWingAPI, Integer> groupOf = new IdentityHashMap<>();
+
+    // Per snapshot index: group id, or -1
+    private int[] shipGroup = new int[128];
+    private int fighterCount = 0;
+
+    // Per group id
+    private int capacity = 0;
+    private FighterWingAPI[] wings = new FighterWingAPI[0];
+    private int[] owner = new int[0];
+    private int[] members = new int[0];
+    private float[] refX = new float[0];
+    private float[] refY = new float[0];
+    private float[] sumX = new float[0];
+    private float[] sumY = new float[0];
+    private float[] sumXX = new float[0];
+    private float[] sumYY = new float[0];
+    private float[] sumXY = new float[0];
+    private float[] maxRadius = new float[0];
+    private float[] carrierX = new float[0];
+    private float[] carrierY = new float[0];
+    private boolean[] hasCarrier = new boolean[0];
+    private int[] freeIds = new int[0];
+    private int freeCount = 0;
+    private int highestId = 0;
+
+    public void update(BattleSnapshot s) {
+        int n = s.shipCount;
+        if (shipGroup.length < n) shipGroup = new int[Math.max(n, shipGroup.length * 2)];
+
+        for (int g = 0; g < highestId; g++) members[g] = 0;
+        fighterCount = 0;
+
+        for (int i = 0; i < n; i++) {
+            shipGroup[i] = -1;
+            if (!s.isFighter(i)) continue;
+            fighterCount++;
+
+            ShipAPI fighter = s.ships[i];
+            FighterWingAPI wing = wingOf.get(fighter);
+            if (wing == null) {
+                wing = fighter.getWing();
+                if (wing == null) continue;
+                wingOf.put(fighter, wing);
+            }
+
+            Integer known = groupOf.get(wing);
+            int g;
+            if (known == null) {
+                g = allocate(wing, s.owner[i]);
+                groupOf.put(wing, g);
+            } else {
+                g = known;
+            }
+            shipGroup[i] = g;
+
+            float x = s.x[i];
+            float y = s.y[i];
+            if (members[g] == 0) {
+                refX[g] = x;
+                refY[g] = y;
+                sumX[g] = 0f;
+                sumY[g] = 0f;
+                sumXX[g] = 0f;
+                sumYY[g] = 0f;
+                sumXY[g] = 0f;
+                maxRadius[g] = 0f;
+            }
+            float dx = x - refX[g];
+            float dy = y - refY[g];
+            members[g]++;
+            sumX[g] += dx;
+            sumY[g] += dy;
+            sumXX[g] += dx * dx;
+            sumYY[g] += dy * dy;
+            sumXY[g] += dx * dy;
+            if (s.radius[i] > maxRadius[g]) maxRadius[g] = s.radius[i];
+        }
+
+        // Wings with nothing left on the field give up their id; the rest
+        // look up where their carrier is
+        for (int g = 0; g < highestId; g++) {
+            if (wings[g] == null) continue;
+            if (members[g] == 0) {
+                release(g);
+                continue;
+            }
+
+            ShipAPI carrier = wings[g].getSourceShip();
+            hasCarrier[g] = carrier != null && carrier.isAlive();
+            if (hasCarrier[g]) {
+                Vector2f location = carrier.getLocation();
+                carrierX[g] = location.x;
+                carrierY[g] = location.y;
+            }
+        }
+
+        // Forget fighters that have left the battle now and then
+        if (wingOf.size() > fighterCount * 2 + 64) {
+            wingOf.clear();
+        }
+    }
+
+    public void clear() {
+        wingOf.clear();
+        groupOf.clear();
+        Arrays.fill(wings, null);
+        highestId = 0;
+        freeCount = 0;
+    }
+
+    /** Wing group of the ship at this snapshot index, or -1 if it isn't a fighter in a wing. */
+    public int getGroup(int shipIndex) {
+        return shipGroup[shipIndex];
+    }
+
+    /** Upper bound (exclusive) on group ids currently in use. */
+    public int getIdLimit() {
+        return highestId;
+    }
+
+    public boolean isLive(int group) {
+        return wings[group] != null;
+    }
+
+    public int getMemberCount(int group) {
+        return members[group];
+    }
+
+    public int getOwner(int group) {
+        return owner[group];
+    }
+
+    public float getCenterX(int group) {
+        return refX[group] + sumX[group] / members[group];
+    }
+
+    public float getCenterY(int group) {
+        return refY[group] + sumY[group] / members[group];
+    }
+
+    /** Collision radius of the largest fighter in the wing. */
+    public float getMaxRadius(int group) {
+        return maxRadius[group];
+    }
+
+    public float getVarianceX(int group) {
+        float mean = sumX[group] / members[group];
+        return Math.max(0f, sumXX[group] / members[group] - mean * mean);
+    }
+
+    public float getVarianceY(int group) {
+        float mean = sumY[group] / members[group];
+        return Math.max(0f, sumYY[group] / members[group] - mean * mean);
+    }
+
+    public float getCovariance(int group) {
+        int count = members[group];
+        return sumXY[group] / count - (sumX[group] / count) * (sumY[group] / count);
+    }
+
+    public boolean hasCarrier(int group) {
+        return hasCarrier[group];
+    }
+
+    public float getCarrierX(int group) {
+        return carrierX[group];
+    }
+
+    public float getCarrierY(int group) {
+        return carrierY[group];
+    }
+
+    private int allocate(FighterWingAPI wing, int ownerId) {
+        int g;
+        if (freeCount > 0) {
+            g = freeIds[--freeCount];
+        } else {
+            if (highestId == capacity) grow();
+            g = highestId++;
+        }
+        wings[g] = wing;
+        owner[g] = ownerId;
+        members[g] = 0;
+        return g;
+    }
+
+    private void release(int g) {
+        groupOf.remove(wings[g]);
+        wings[g] = null;
+        freeIds[freeCount++] = g;
+    }
+
+    private void grow() {
+        int newSize = Math.max(32, capacity * 2);
+        wings = Arrays.copyOf(wings, newSize);
+        owner = Arrays.copyOf(owner, newSize);
+        members = Arrays.copyOf(members, newSize);
+        refX = Arrays.copyOf(refX, newSize);
+        refY = Arrays.copyOf(refY, newSize);
+        sumX = Arrays.copyOf(sumX, newSize);
+        sumY = Arrays.copyOf(sumY, newSize);
+        sumXX = Arrays.copyOf(sumXX, newSize);
+        sumYY = Arrays.copyOf(sumYY, newSize);
+        sumXY = Arrays.copyOf(sumXY, newSize);
+        maxRadius = Arrays.copyOf(maxRadius, newSize);
+        carrierX = Arrays.copyOf(carrierX, newSize);
+        carrierY = Arrays.copyOf(carrierY, newSize);
+        hasCarrier = Arrays.copyOf(hasCarrier, newSize);
+        freeIds = Arrays.copyOf(freeIds, newSize);
+        capacity = newSize;
+    }
+}
@@ -0,0 +1,258 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ShipAPI;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.util.Arrays;
+
+/**
+ * Plans formation move orders: lays out one slot per selected ship around
+ * the clicked point and decides which ship takes which slot.
+ *
+ * Slots are spaced by the largest collision radius in the group and the
+ * formation faces from the group's centroid toward the target. Ships are
+ * matched to slots by sorting both along the formation's lateral axis
+ * (optimal for a line when ships don't cross), then improved with a
+ * bounded 2-opt pass that swaps pairs of nearby ships whenever that
+ * shortens their combined travel. That is O(n log n + n * window) per
+ * plan, so previewing every frame stays cheap for 100+ ships.
+ *
+ * All arrays are reused between plans.
+ */
+public class FormationPlanner {
+
+    public enum Shape {
+        NONE("None"),
+        LINE("Line"),
+        WEDGE("Wedge"),
+        BOX("Box");
+
+        private final String displayName;
+
+        Shape(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public Shape next() {
+            Shape[] shapes = values();
+            return shapes[(ordinal() + 1) % shapes.length];
+        }
+    }
+
+    // Gap between neighbouring ships' collision circles
+    private static final float SLOT_GAP = 80f;
+
+    // 2-opt compares each ship with this many neighbours along the lateral axis;
+    // small groups are compared exhaustively
+    private static final int SWAP_WINDOW = 12;
+    private static final int EXHAUSTIVE_LIMIT = 32;
+    private static final int MAX_SWAP_PASSES = 4;
+
+    private int count = 0;
+    private ShipAPI[] ships = new ShipAPI[32];
+    private float[] shipX = new float[32];
+    private float[] shipY = new float[32];
+    private float[] shipRadius = new float[32];
+    private float[] slotX = new float[32];
+    private float[] slotY = new float[32];
+
+    // Sort scratch: ship and slot indices ordered by lateral position, with their keys
+    private int[] shipOrder = new int[32];
+    private int[] slotOrder = new int[32];
+    private float[] shipKeys = new float[32];
+    private float[] slotKeys = new float[32];
+
+    // Slot assigned to each ship
+    private int[] slotOfShip = new int[32];
+
+    /**
+     * Plans slots for every ship in the selection around the target.
+     * Results are read back through {@link #size()}, {@link #getShip},
+     * {@link #getSlotX} and {@link #getSlotY}.
+     */
+    public void plan(Shape shape, ShipSelection selection, float targetX, float targetY) {
+        clear();
+        int n = selection.size();
+        if (shape == Shape.NONE || n == 0) return;
+        ensureCapacity(n);
+
+        float centroidX = 0f;
+        float centroidY = 0f;
+        float maxRadius = 0f;
+        for (int i = 0; i < n; i++) {
+            ShipAPI ship = selection.get(i);
+            Vector2f location = ship.getLocation();
+            ships[i] = ship;
+            shipX[i] = location.x;
+            shipY[i] = location.y;
+            shipRadius[i] = ship.getCollisionRadius();
+            centroidX += location.x;
+            centroidY += location.y;
+            if (shipRadius[i] > maxRadius) maxRadius = shipRadius[i];
+        }
+        centroidX /= n;
+        centroidY /= n;
+        count = n;
+
+        // Formation faces from the group toward the target
+        float forwardX = targetX - centroidX;
+        float forwardY = targetY - centroidY;
+        float length = (float) Math.sqrt(forwardX * forwardX + forwardY * forwardY);
+        if (length < 1f) {
+            forwardX = 0f;
+            forwardY = 1f;
+        } else {
+            forwardX /= length;
+            forwardY /= length;
+        }
+        float rightX = forwardY;
+        float rightY = -forwardX;
+
+        float spacing = maxRadius * 2f + SLOT_GAP;
+        layOutSlots(shape, n, spacing, targetX, targetY, forwardX, forwardY, rightX, rightY);
+
+        // Initial matching: ships and slots paired off in lateral order
+        for (int i = 0; i < n; i++) {
+            shipOrder[i] = i;
+            slotOrder[i] = i;
+            shipKeys[i] = (shipX[i] - centroidX) * rightX + (shipY[i] - centroidY) * rightY;
+            slotKeys[i] = (slotX[i] - targetX) * rightX + (slotY[i] - targetY) * rightY;
+        }
+        sortByKey(shipOrder, shipKeys, n);
+        sortByKey(slotOrder, slotKeys, n);
+        for (int i = 0; i < n; i++) {
+            slotOfShip[shipOrder[i]] = slotOrder[i];
+        }
+
+        improveBySwaps(n);
+    }
+
+    public void clear() {
+        Arrays.fill(ships, 0, count, null);
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public ShipAPI getShip(int index) {
+        return ships[index];
+    }
+
+    public float getShipRadius(int index) {
+        return shipRadius[index];
+    }
+
+    public float getSlotX(int index) {
+        return slotX[slotOfShip[index]];
+    }
+
+    public float getSlotY(int index) {
+        return slotY[slotOfShip[index]];
+    }
+
+    private void layOutSlots(Shape shape, int n, float spacing, float targetX, float targetY,
+                             float forwardX, float forwardY, float rightX, float rightY) {
+        int columns = (int) Math.ceil(Math.sqrt(n));
+
+        for (int k = 0; k < n; k++) {
+            float lateral;
+            float forward;
+
+            if (shape == Shape.LINE) {
+                lateral = (k - (n - 1) * 0.5f) * spacing;
+                forward = 0f;
+            } else if (shape == Shape.WEDGE) {
+                // Tip on the target, ranks trailing back alternately left and right
+                int rank = (k + 1) / 2;
+                float side = (k & 1) == 1 ? -1f : 1f;
+                lateral = side * rank * spacing;
+                forward = -rank * spacing * 0.8f;
+            } else {
+                // Square-ish block, last row centered
+                int row = k / columns;
+                int column = k % columns;
+                int inRow = Math.min(columns, n - row * columns);
+                lateral = (column - (inRow - 1) * 0.5f) * spacing;
+                forward = -row * spacing;
+            }
+
+            slotX[k] = targetX + rightX * lateral + forwardX * forward;
+            slotY[k] = targetY + rightY * lateral + forwardY * forward;
+        }
+    }
+
+    private void improveBySwaps(int n) {
+        int window = n <= EXHAUSTIVE_LIMIT ? n : SWAP_WINDOW;
+
+        for (int pass = 0; pass < MAX_SWAP_PASSES; pass++) {
+            boolean improved = false;
+
+            for (int a = 0; a < n; a++) {
+                int i = shipOrder[a];
+                int last = Math.min(n - 1, a + window);
+                for (int b = a + 1; b <= last; b++) {
+                    int j = shipOrder[b];
+                    int slotI = slotOfShip[i];
+                    int slotJ = slotOfShip[j];
+
+                    float current = distance(i, slotI) + distance(j, slotJ);
+                    float swapped = distance(i, slotJ) + distance(j, slotI);
+                    if (swapped < current - 0.01f) {
+                        slotOfShip[i] = slotJ;
+                        slotOfShip[j] = slotI;
+                        improved = true;
+                    }
+                }
+            }
+
+            if (!improved) break;
+        }
+    }
+
+    private float distance(int ship, int slot) {
+        float dx = slotX[slot] - shipX[ship];
+        float dy = slotY[slot] - shipY[ship];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /** Shell sort of order[0, n) by key[order[i]], ascending. No allocation. */
+    private static void sortByKey(int[] order, float[] key, int n) {
+        for (int gap = n / 2; gap > 0; gap /= 2) {
+            for (int i = gap; i < n; i++) {
+                int value = order[i];
+                float valueKey = key[value];
+                int j = i;
+                while (j >= gap && key[order[j - gap]] > valueKey) {
+                    order[j] = order[j - gap];
+                    j -= gap;
+                }
+                order[j] = value;
+            }
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= ships.length) return;
+
+        int newSize = ships.length;
+        while (newSize < needed) newSize *= 2;
+
+        ships = Arrays.copyOf(ships, newSize);
+        shipX = Arrays.copyOf(shipX, newSize);
+        shipY = Arrays.copyOf(shipY, newSize);
+        shipRadius = Arrays.copyOf(shipRadius, newSize);
+        slotX = Arrays.copyOf(slotX, newSize);
+        slotY = Arrays.copyOf(slotY, newSize);
+        shipOrder = Arrays.copyOf(shipOrder, newSize);
+        slotOrder = Arrays.copyOf(slotOrder, newSize);
+        shipKeys = Arrays.copyOf(shipKeys, newSize);
+        slotKeys = Arrays.copyOf(slotKeys, newSize);
+        slotOfShip = Arrays.copyOf(slotOfShip, newSize);
+    }
+}
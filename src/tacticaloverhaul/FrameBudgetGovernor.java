@@ -0,0 +1,144 @@
+package tacticaloverhaul;
+
+/**
+ * Keeps the overlay's own cost per frame under a budget by trading detail.
+ *
+ * The overlay reports the wall-clock time of each frame's input-plugin
+ * advance (capture, spatial index, order polling, telemetry) plus its own
+ * advance and render. Every {@value #WINDOW_FRAMES} frames the window's
+ * average is checked: over budget, detail steps down one level; under
+ * {@value #HEADROOM} of the budget for {@value #STEP_UP_WINDOWS} windows in
+ * a row, it steps back up one. Each level keeps the ones before it:
+ * <ol>
+ *   <li>velocity arrows off</li>
+ *   <li>circles drawn with {@value #COARSE_CIRCLE_FACTOR}x the chord error</li>
+ *   <li>range circles for selected ships only</li>
+ *   <li>order lines rebuilt at {@value #SLOW_ORDERS_FACTOR}x their rate</li>
+ * </ol>
+ * The chord error only applies to circles drawn as line segments. While
+ * circles go to the ring shader (see {@link #setRingShader}) that level
+ * would save nothing, so it is stepped over in both directions.
+ * The gap between the two thresholds, and waiting longer to step up than
+ * to step down, keeps detail from flickering between two levels.
+ *
+ * The levels only ever take detail away from the {@link OverlayPreset} in
+ * use; the getters return the preset's values with the current level
+ * applied.
+ */
+public class FrameBudgetGovernor {
+
+    public static final int LEVEL_FULL = 0;
+    public static final int LEVEL_NO_VELOCITY = 1;
+    public static final int LEVEL_COARSE_CIRCLES = 2;
+    public static final int LEVEL_SELECTED_RANGES = 3;
+    public static final int LEVEL_SLOW_ORDERS = 4;
+
+    public static final float DEFAULT_BUDGET_MILLIS = 1.5f;
+
+    private static final int WINDOW_FRAMES = 30;
+    private static final float HEADROOM = 0.6f;
+    private static final int STEP_UP_WINDOWS = 4;
+
+    private static final float COARSE_CIRCLE_FACTOR = 4f;
+    private static final float SLOW_ORDERS_FACTOR = 0.25f;
+
+    private final long budgetNanos;
+
+    private int level = LEVEL_FULL;
+    private long windowNanos = 0L;
+    private int windowFrames = 0;
+    private int quietWindows = 0;
+    private float lastAverageMillis = 0f;
+    private boolean ringShader = false;
+
+    public FrameBudgetGovernor() {
+        this(DEFAULT_BUDGET_MILLIS);
+    }
+
+    public FrameBudgetGovernor(float budgetMillis) {
+        this.budgetNanos = (long) (budgetMillis * 1_000_000f);
+    }
+
+    /**
+     * Records one frame's overlay cost.
+     *
+     * @return true if the detail level changed
+     */
+    public boolean record(long frameNanos) {
+        windowNanos += frameNanos;
+        if (++windowFrames < WINDOW_FRAMES) return false;
+
+        long average = windowNanos / windowFrames;
+        lastAverageMillis = average / 1_000_000f;
+        windowNanos = 0L;
+        windowFrames = 0;
+
+        if (average > budgetNanos) {
+            quietWindows = 0;
+            if (level < LEVEL_SLOW_ORDERS) {
+                level++;
+                if (level == LEVEL_COARSE_CIRCLES && ringShader) level++;
+                return true;
+            }
+        } else if (average < budgetNanos * HEADROOM && level > LEVEL_FULL) {
+            if (++quietWindows >= STEP_UP_WINDOWS) {
+                quietWindows = 0;
+                level--;
+                if (level == LEVEL_COARSE_CIRCLES && ringShader) level--;
+                return true;
+            }
+        } else {
+            quietWindows = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Tells the governor whether circles are drawn by the ring shader, where
+     * the coarse-circle level has no effect.
+     *
+     * @return true if the detail level changed
+     */
+    public boolean setRingShader(boolean ringShader) {
+        this.ringShader = ringShader;
+        if (ringShader && level == LEVEL_COARSE_CIRCLES) {
+            level = LEVEL_NO_VELOCITY;
+            return true;
+        }
+        return false;
+    }
+
+    /** Forgets the current window, e.g. while the overlay is hidden. */
+    public void resetWindow() {
+        windowNanos = 0L;
+        windowFrames = 0;
+        quietWindows = 0;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /** Average overlay cost over the last complete window, in milliseconds. */
+    public float getLastAverageMillis() {
+        return lastAverageMillis;
+    }
+
+    public boolean showsVelocityArrows(OverlayPreset preset) {
+        return preset.velocityArrows && level < LEVEL_NO_VELOCITY;
+    }
+
+    public float getCircleErrorPixels(OverlayPreset preset) {
+        return level >= LEVEL_COARSE_CIRCLES
+            ? preset.circleErrorPixels * COARSE_CIRCLE_FACTOR
+            : preset.circleErrorPixels;
+    }
+
+    public boolean rangeCirclesForSelectedOnly() {
+        return level >= LEVEL_SELECTED_RANGES;
+    }
+
+    public float getOrdersRate(OverlayPreset preset) {
+        return level >= LEVEL_SLOW_ORDERS ? preset.ordersRate * SLOW_ORDERS_FACTOR : preset.ordersRate;
+    }
+}
@@ -0,0 +1,158 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ViewportAPI;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.FloatBuffer;
+
+/**
+ * {@link RenderSink} that draws with LWJGL's GL11 bindings, plus GL20 for
+ * {@link RingShader} where available. One instance is shared by every
+ * overlay; the only state it keeps is whether the ring shader is bound,
+ * within one beginBatch/endBatch run.
+ */
+public final class GL11RenderSink implements RenderSink {
+
+    public static final GL11RenderSink INSTANCE = new GL11RenderSink();
+
+    private static final int STRIDE_BYTES = 6 * 4; // x, y, r, g, b, a
+    private static final int DASHED_STRIDE_BYTES = 7 * 4; // x, y, r, g, b, a, s
+    private static final int TEXT_STRIDE_BYTES = 8 * 4; // x, y, r, g, b, a, u, v
+
+    // Ring shader stays bound across consecutive drawRings calls
+    private boolean ringsBound = false;
+
+    private GL11RenderSink() {
+    }
+
+    @Override
+    public void beginOverlay() {
+        GL11.glPushMatrix();
+        GL11.glDisable(GL11.GL_TEXTURE_2D);
+        GL11.glEnable(GL11.GL_BLEND);
+        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    @Override
+    public void endOverlay() {
+        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        GL11.glPopMatrix();
+    }
+
+    @Override
+    public void beginBatch() {
+        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+    }
+
+    @Override
+    public void drawVertices(int mode, float size, FloatBuffer vertices, int vertexCount) {
+        unbindRings();
+        vertices.position(0);
+        GL11.glVertexPointer(2, STRIDE_BYTES, vertices);
+        vertices.position(2);
+        GL11.glColorPointer(4, STRIDE_BYTES, vertices);
+
+        if (mode == GL11.GL_LINES) {
+            GL11.glLineWidth(size);
+        } else if (mode == GL11.GL_POINTS) {
+            GL11.glPointSize(size);
+        }
+
+        GL11.glDrawArrays(mode, 0, vertexCount);
+    }
+
+    @Override
+    public void drawDashedLines(float width, FloatBuffer vertices, int vertexCount, float patternOffset) {
+        unbindRings();
+        vertices.position(0);
+        GL11.glVertexPointer(2, DASHED_STRIDE_BYTES, vertices);
+        vertices.position(2);
+        GL11.glColorPointer(4, DASHED_STRIDE_BYTES, vertices);
+        vertices.position(6);
+        GL11.glTexCoordPointer(1, DASHED_STRIDE_BYTES, vertices);
+        GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+
+        GL11.glEnable(GL11.GL_TEXTURE_1D);
+        DashTexture.bind();
+        if (patternOffset != 0f) {
+            GL11.glMatrixMode(GL11.GL_TEXTURE);
+            GL11.glLoadIdentity();
+            GL11.glTranslatef(-patternOffset, 0f, 0f);
+        }
+
+        GL11.glLineWidth(width);
+        GL11.glDrawArrays(GL11.GL_LINES, 0, vertexCount);
+
+        if (patternOffset != 0f) {
+            GL11.glLoadIdentity();
+            GL11.glMatrixMode(GL11.GL_MODELVIEW);
+        }
+        GL11.glDisable(GL11.GL_TEXTURE_1D);
+        GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+    }
+
+    @Override
+    public void drawRings(FloatBuffer vertices, int vertexCount) {
+        if (!ringsBound) {
+            RingShader.begin();
+            ringsBound = true;
+        }
+        RingShader.draw(vertices, vertexCount);
+    }
+
+    private void unbindRings() {
+        if (ringsBound) {
+            RingShader.end();
+            ringsBound = false;
+        }
+    }
+
+    @Override
+    public void drawText(FloatBuffer vertices, int vertexCount) {
+        unbindRings();
+        vertices.position(0);
+        GL11.glVertexPointer(2, TEXT_STRIDE_BYTES, vertices);
+        vertices.position(2);
+        GL11.glColorPointer(4, TEXT_STRIDE_BYTES, vertices);
+        vertices.position(6);
+        GL11.glTexCoordPointer(2, TEXT_STRIDE_BYTES, vertices);
+        GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+
+        // Default GL_MODULATE: vertex color tints the white glyphs
+        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        GlyphAtlas.bind();
+        GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, vertexCount);
+        GL11.glDisable(GL11.GL_TEXTURE_2D);
+        GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+    }
+
+    @Override
+    public boolean supportsRings() {
+        return RingShader.isAvailable();
+    }
+
+    @Override
+    public void endBatch() {
+        unbindRings();
+        GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
+        GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+        GL11.glLineWidth(1f);
+        GL11.glPointSize(1f);
+    }
+
+    @Override
+    public void drawScanlines(ViewportAPI viewport, int color, float alpha) {
+        ScanlineOverlay.render(viewport, color, alpha);
+    }
+
+    @Override
+    public void drawThreatMap(ThreatMap map, float minX, float minY, float width, float height, float alpha) {
+        ThreatMapOverlay.render(map, minX, minY, width, height, alpha);
+    }
+
+    @Override
+    public void releaseThreatMap(ThreatMap map) {
+        ThreatMapOverlay.release(map);
+    }
+}
@@ -0,0 +1,188 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.Global;
+import org.apache.log4j.Logger;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * Font for overlay labels: printable ASCII rasterized once into a single
+ * texture, one fixed-size cell per glyph, plus each glyph's advance and
+ * texture coordinates for laying out text.
+ *
+ * The glyphs are drawn with AWT on first use (the mod plugin does this at
+ * application load) and uploaded to GL on the first {@link #bind()}. The
+ * texture is white with the glyph shapes in alpha, so vertex colors tint
+ * it. If the font can't be rasterized the atlas reports itself unavailable
+ * and the overlay draws no labels.
+ */
+public final class GlyphAtlas {
+
+    public static final char FIRST_CHAR = 32;
+    public static final char LAST_CHAR = 126;
+    private static final int GLYPH_COUNT = LAST_CHAR - FIRST_CHAR + 1;
+
+    private static final int FONT_SIZE = 12;
+    private static final int COLUMNS = 16;
+    private static final int CELL_PADDING = 1; // Keeps linear filtering from bleeding into neighbours
+
+    private static final Logger log = Global.getLogger(GlyphAtlas.class);
+
+    private static boolean built = false;
+    private static boolean available = false;
+
+    // Cell size in pixels; every glyph quad is one cell
+    private static float cellWidth = 0f;
+    private static float cellHeight = 0f;
+
+    // Per glyph: advance in pixels, and u0, v0, u1, v1 of its cell
+    private static final float[] advances = new float[GLYPH_COUNT];
+    private static final float[] texCoords = new float[GLYPH_COUNT * 4];
+
+    private static ByteBuffer pixels = null;
+    private static int textureWidth = 0;
+    private static int textureHeight = 0;
+    private static int textureId = 0;
+
+    private GlyphAtlas() {
+    }
+
+    /** Whether labels can be drawn; rasterizes the font the first time. */
+    public static boolean isAvailable() {
+        if (!built) {
+            built = true;
+            try {
+                build();
+                available = true;
+            } catch (RuntimeException | LinkageError e) {
+                log.warn("Overlay labels unavailable, couldn't rasterize font: " + e);
+            }
+        }
+        return available;
+    }
+
+    /** Height of a line of text, in pixels. */
+    public static float getLineHeight() {
+        return cellHeight;
+    }
+
+    public static float getCellWidth() {
+        return cellWidth;
+    }
+
+    /** Advance of a character in pixels; anything outside the atlas draws as '?'. */
+    public static float getAdvance(char c) {
+        return advances[glyphIndex(c)];
+    }
+
+    /** Width of the first length characters, in pixels. */
+    public static float getWidth(char[] chars, int length) {
+        float width = 0f;
+        for (int i = 0; i < length; i++) {
+            width += advances[glyphIndex(chars[i])];
+        }
+        return width;
+    }
+
+    /** Texture coordinate of a glyph's cell: 0-3 for u0, v0, u1, v1. */
+    static float getTexCoord(char c, int corner) {
+        return texCoords[glyphIndex(c) * 4 + corner];
+    }
+
+    static int glyphIndex(char c) {
+        return c >= FIRST_CHAR && c <= LAST_CHAR ? c - FIRST_CHAR : '?' - FIRST_CHAR;
+    }
+
+    /** Binds the atlas to GL_TEXTURE_2D, uploading it the first time. */
+    public static void bind() {
+        if (textureId == 0 && isAvailable()) {
+            textureId = createTexture();
+        }
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureId);
+    }
+
+    private static void build() {
+        Font font = new Font(Font.MONOSPACED, Font.BOLD, FONT_SIZE);
+
+        // Metrics need a graphics context; a 1x1 image is enough
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D probeGraphics = probe.createGraphics();
+        probeGraphics.setFont(font);
+        FontMetrics metrics = probeGraphics.getFontMetrics();
+        probeGraphics.dispose();
+
+        int maxAdvance = 1;
+        for (int i = 0; i < GLYPH_COUNT; i++) {
+            maxAdvance = Math.max(maxAdvance, metrics.charWidth((char) (FIRST_CHAR + i)));
+        }
+        int cellW = maxAdvance + CELL_PADDING * 2;
+        int cellH = metrics.getAscent() + metrics.getDescent() + CELL_PADDING * 2;
+        int rows = (GLYPH_COUNT + COLUMNS - 1) / COLUMNS;
+        int width = powerOfTwo(cellW * COLUMNS);
+        int height = powerOfTwo(cellH * rows);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setFont(font);
+        g.setColor(Color.WHITE);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        char[] one = new char[1];
+        for (int i = 0; i < GLYPH_COUNT; i++) {
+            int left = (i % COLUMNS) * cellW;
+            int top = (i / COLUMNS) * cellH;
+            one[0] = (char) (FIRST_CHAR + i);
+            g.drawChars(one, 0, 1, left + CELL_PADDING, top + CELL_PADDING + metrics.getAscent());
+
+            advances[i] = metrics.charWidth(one[0]);
+            texCoords[i * 4] = (float) left / width;
+            texCoords[i * 4 + 1] = (float) top / height;
+            texCoords[i * 4 + 2] = (float) (left + cellW) / width;
+            texCoords[i * 4 + 3] = (float) (top + cellH) / height;
+        }
+        g.dispose();
+
+        // Row 0 of the image is the top; texture rows are uploaded in the same
+        // order, so v grows downwards like the image
+        ByteBuffer texels = BufferUtils.createByteBuffer(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                texels.put((byte) 255).put((byte) 255).put((byte) 255)
+                      .put((byte) (image.getRGB(x, y) >>> 24));
+            }
+        }
+        texels.flip();
+
+        cellWidth = cellW;
+        cellHeight = cellH;
+        textureWidth = width;
+        textureHeight = height;
+        pixels = texels;
+    }
+
+    private static int createTexture() {
+        int id = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, id);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL11.GL_CLAMP);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL11.GL_CLAMP);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, textureWidth, textureHeight, 0,
+                          GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixels);
+        pixels = null; // GL has its own copy now
+        return id;
+    }
+
+    private static int powerOfTwo(int size) {
+        int result = 1;
+        while (result < size) result <<= 1;
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+package tacticaloverhaul;
+
+/**
+ * Decides when each slow overlay layer rebuilds its retained geometry.
+ *
+ * A layer is rebuilt once its update interval has passed in combat time,
+ * or straight away when what it was built for no longer holds: the overlay
+ * alpha changed noticeably, the zoom moved enough to change circle detail, the view
+ * left the padded area the layer was culled against, or the layer was
+ * invalidated. Between rebuilds the layer's batch is drawn as it is,
+ * extrapolated by the time since it was last shown.
+ *
+ * Time is the snapshot's combat time, so nothing rebuilds or moves while
+ * the game is paused.
+ */
+public class LayerScheduler {
+
+    // Zoom change, as a fraction, and alpha change that force a rebuild
+    private static final float ZOOM_TOLERANCE = 0.1f;
+    private static final float ALPHA_TOLERANCE = 0.02f;
+
+    private final float[] interval;
+    private final boolean[] built;
+    private final float[] builtAt;
+    private final float[] shownAt;
+    private final float[] builtAlpha;
+    private final float[] builtViewMult;
+    private final float[] builtMinX;
+    private final float[] builtMinY;
+    private final float[] builtMaxX;
+    private final float[] builtMaxY;
+
+    /**
+     * @param rates updates per second for each layer, indexed by layer id
+     */
+    public LayerScheduler(float... rates) {
+        int count = rates.length;
+        interval = new float[count];
+        for (int i = 0; i < count; i++) {
+            interval[i] = 1f / rates[i];
+        }
+        built = new boolean[count];
+        builtAt = new float[count];
+        shownAt = new float[count];
+        builtAlpha = new float[count];
+        builtViewMult = new float[count];
+        builtMinX = new float[count];
+        builtMinY = new float[count];
+        builtMaxX = new float[count];
+        builtMaxY = new float[count];
+    }
+
+    /** Changes a layer's update rate; takes effect from its next rebuild check. */
+    public void setRate(int layer, float rate) {
+        interval[layer] = 1f / rate;
+    }
+
+    /**
+     * True if the layer has to be rebuilt for a frame at this time, alpha,
+     * zoom and visible rectangle.
+     */
+    public boolean isDue(int layer, float time, float alpha, float viewMult,
+                         float minX, float minY, float maxX, float maxY) {
+        if (!built[layer]) return true;
+        if (time < builtAt[layer] || time - builtAt[layer] >= interval[layer]) return true;
+        if (Math.abs(alpha - builtAlpha[layer]) > ALPHA_TOLERANCE) return true;
+        if (Math.abs(viewMult - builtViewMult[layer]) > builtViewMult[layer] * ZOOM_TOLERANCE) return true;
+        return minX < builtMinX[layer] || minY < builtMinY[layer]
+            || maxX > builtMaxX[layer] || maxY > builtMaxY[layer];
+    }
+
+    /**
+     * Records a rebuild. The rectangle is the area the layer was culled
+     * against, which may be larger than the view.
+     */
+    public void markBuilt(int layer, float time, float alpha, float viewMult,
+                          float minX, float minY, float maxX, float maxY) {
+        built[layer] = true;
+        builtAt[layer] = time;
+        shownAt[layer] = time;
+        builtAlpha[layer] = alpha;
+        builtViewMult[layer] = viewMult;
+        builtMinX[layer] = minX;
+        builtMinY[layer] = minY;
+        builtMaxX[layer] = maxX;
+        builtMaxY[layer] = maxY;
+    }
+
+    /** Seconds since the layer was last shown, for extrapolation; marks it shown now. */
+    public float advanceShown(int layer, float time) {
+        float elapsed = time - shownAt[layer];
+        shownAt[layer] = time;
+        return elapsed;
+    }
+
+    public void invalidate(int layer) {
+        built[layer] = false;
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < built.length; i++) {
+            built[i] = false;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ShipAPI;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * One named set of overlay layers and detail levels, read from the
+ * "presets" list in settings.json (see {@link TacticalSettings}).
+ *
+ * Immutable. Keys missing from a preset's JSON keep the values of
+ * {@link #FULL}, which is also what the overlay uses when no settings
+ * were loaded.
+ */
+public final class OverlayPreset {
+
+    /** Everything on at full detail; matches the overlay before presets existed. */
+    public static final OverlayPreset FULL = new OverlayPreset(
+        "Full", true, true, true, hullSizes(ShipAPI.HullSize.CRUISER, ShipAPI.HullSize.CAPITAL_SHIP),
+        true, false, true, true, true, true, 0.5f, 10f, 10f, 5f);
+
+    private static final ShipAPI.HullSize[] HULL_SIZES = ShipAPI.HullSize.values();
+
+    public final String name;
+
+    public final boolean scanlines;
+    public final boolean velocityArrows;
+    public final boolean rangeCircles;
+    private final boolean[] rangeCircleHullSizes; // By HullSize ordinal
+    public final boolean fluxArcs;
+    public final boolean fluxArcsForAll; // Otherwise enemies only
+    public final boolean fighters;
+    public final boolean orderLines;
+    public final boolean objectives;
+    public final boolean labels; // Hull class, name, flux and range under each ship
+
+    /**
+     * Allowed gap between a circle segment and the true circle, in pixels;
+     * higher is coarser. Only for shapes drawn as line segments: ellipses,
+     * and circles and arcs when the ring shader is unavailable (GL 1.x).
+     */
+    public final float circleErrorPixels;
+
+    // Layer rebuilds per second
+    public final float statusRate;
+    public final float ordersRate;
+    public final float objectivesRate;
+
+    private OverlayPreset(String name, boolean scanlines, boolean velocityArrows, boolean rangeCircles,
+                          boolean[] rangeCircleHullSizes, boolean fluxArcs, boolean fluxArcsForAll,
+                          boolean fighters, boolean orderLines, boolean objectives, boolean labels,
+                          float circleErrorPixels,
+                          float statusRate, float ordersRate, float objectivesRate) {
+        this.name = name;
+        this.scanlines = scanlines;
+        this.velocityArrows = velocityArrows;
+        this.rangeCircles = rangeCircles;
+        this.rangeCircleHullSizes = rangeCircleHullSizes;
+        this.fluxArcs = fluxArcs;
+        this.fluxArcsForAll = fluxArcsForAll;
+        this.fighters = fighters;
+        this.orderLines = orderLines;
+        this.objectives = objectives;
+        this.labels = labels;
+        this.circleErrorPixels = circleErrorPixels;
+        this.statusRate = statusRate;
+        this.ordersRate = ordersRate;
+        this.objectivesRate = objectivesRate;
+    }
+
+    /** Whether ships of this hull size, by ordinal, get a weapon range circle. */
+    public boolean showsRangeCircle(int hullSizeOrdinal) {
+        return rangeCircles && rangeCircleHullSizes[hullSizeOrdinal];
+    }
+
+    /**
+     * Reads a preset, taking anything it doesn't set from the base preset.
+     *
+     * @throws JSONException if a value has the wrong type or names an unknown hull size
+     */
+    public static OverlayPreset fromJson(JSONObject json, OverlayPreset base) throws JSONException {
+        boolean[] hullSizes = base.rangeCircleHullSizes;
+        JSONArray sizes = json.optJSONArray("rangeCircleHullSizes");
+        if (sizes != null) {
+            hullSizes = new boolean[HULL_SIZES.length];
+            for (int i = 0; i < sizes.length(); i++) {
+                String size = sizes.getString(i);
+                try {
+                    hullSizes[ShipAPI.HullSize.valueOf(size).ordinal()] = true;
+                } catch (IllegalArgumentException e) {
+                    throw new JSONException("Unknown hull size " + size);
+                }
+            }
+        }
+
+        return new OverlayPreset(
+            json.optString("name", base.name),
+            json.optBoolean("scanlines", base.scanlines),
+            json.optBoolean("velocityArrows", base.velocityArrows),
+            json.optBoolean("rangeCircles", base.rangeCircles),
+            hullSizes,
+            json.optBoolean("fluxArcs", base.fluxArcs),
+            json.optBoolean("fluxArcsForAll", base.fluxArcsForAll),
+            json.optBoolean("fighters", base.fighters),
+            json.optBoolean("orderLines", base.orderLines),
+            json.optBoolean("objectives", base.objectives),
+            json.optBoolean("labels", base.labels),
+            positive(json, "circleErrorPixels", base.circleErrorPixels),
+            positive(json, "statusRate", base.statusRate),
+            positive(json, "ordersRate", base.ordersRate),
+            positive(json, "objectivesRate", base.objectivesRate));
+    }
+
+    private static float positive(JSONObject json, String key, float fallback) throws JSONException {
+        float value = (float) json.optDouble(key, fallback);
+        if (!(value > 0f)) throw new JSONException(key + " must be positive");
+        return value;
+    }
+
+    private static boolean[] hullSizes(ShipAPI.HullSize... sizes) {
+        boolean[] result = new boolean[ShipAPI.HullSize.values().length];
+        for (ShipAPI.HullSize size : sizes) {
+            result[size.ordinal()] = true;
+        }
+        return result;
+    }
+}
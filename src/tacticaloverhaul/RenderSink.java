@@ -0,0 +1,71 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ViewportAPI;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Where the tactical overlay's draw calls end up.
+ *
+ * In game this is {@link GL11RenderSink}. Keeping the GL calls behind this
+ * interface lets the renderer run without a GL context, e.g. against a sink
+ * that only counts calls and vertices for benchmarking.
+ */
+public interface RenderSink {
+
+    /** Sets up matrix, blending and texturing for the overlay. */
+    void beginOverlay();
+
+    /** Restores the state changed by {@link #beginOverlay()}. */
+    void endOverlay();
+
+    /** Starts a run of {@link #drawVertices} calls from {@link TacticalRenderBatch#draw}. */
+    void beginBatch();
+
+    /**
+     * Draws interleaved x, y, r, g, b, a vertices.
+     *
+     * @param mode GL primitive type (GL_TRIANGLES, GL_LINES or GL_POINTS)
+     * @param size line width or point size; ignored for triangles
+     */
+    void drawVertices(int mode, float size, FloatBuffer vertices, int vertexCount);
+
+    /**
+     * Draws GL_LINES from interleaved x, y, r, g, b, a, s vertices, dashed
+     * with {@link DashTexture} along s. Also between beginBatch and endBatch.
+     *
+     * @param patternOffset how far the dashes are shifted towards each
+     *                      line's second point, in dash periods
+     */
+    void drawDashedLines(float width, FloatBuffer vertices, int vertexCount, float patternOffset);
+
+    /**
+     * Draws ring vertices from {@link TacticalRenderBatch#ring} as
+     * GL_TRIANGLES, see {@link RingShader}. Also between beginBatch and
+     * endBatch; only called when {@link #supportsRings()} is true.
+     */
+    void drawRings(FloatBuffer vertices, int vertexCount);
+
+    /** Whether {@link #drawRings} can be used; otherwise circles are drawn as lines. */
+    boolean supportsRings();
+
+    /**
+     * Draws GL_TRIANGLES from interleaved x, y, r, g, b, a, u, v vertices,
+     * textured with {@link GlyphAtlas}. Also between beginBatch and endBatch.
+     */
+    void drawText(FloatBuffer vertices, int vertexCount);
+
+    void endBatch();
+
+    /** Scanline effect over the whole viewport, see {@link ScanlineOverlay}. */
+    void drawScanlines(ViewportAPI viewport, int color, float alpha);
+
+    /**
+     * Uploads the threat map's newest frame, if any, and draws it stretched
+     * over the given world rectangle, see {@link ThreatMapOverlay}.
+     */
+    void drawThreatMap(ThreatMap map, float minX, float minY, float width, float height, float alpha);
+
+    /** Drops any reference to the map, at the end of its battle. */
+    void releaseThreatMap(ThreatMap map);
+}
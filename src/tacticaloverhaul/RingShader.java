@@ -0,0 +1,152 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.Global;
+import org.apache.log4j.Logger;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GLContext;
+
+import java.nio.FloatBuffer;
+
+/**
+ * GLSL program that shades ring and arc outlines by signed distance, for
+ * the ring vertices written by {@link TacticalRenderBatch#ring}.
+ *
+ * Each fragment measures its distance from the ring in pixels, using the
+ * screen-space derivative of its offset from the center, so outlines keep
+ * their pixel width and a one-pixel anti-aliased edge at any zoom. Arcs
+ * drop fragments outside their span.
+ *
+ * Needs OpenGL 2.0. The program is compiled on first use; if that isn't
+ * possible {@link #isAvailable()} stays false and the overlay keeps drawing
+ * circles as line segments.
+ */
+public final class RingShader {
+
+    private static final String VERTEX_SOURCE =
+        "#version 110\n"
+        + "attribute vec4 ring;\n" // offset x, offset y, radius, half width in pixels
+        + "attribute vec2 arc;\n"  // start, span in radians
+        + "varying vec4 vRing;\n"
+        + "varying vec2 vArc;\n"
+        + "void main() {\n"
+        + "    gl_Position = ftransform();\n"
+        + "    gl_FrontColor = gl_Color;\n"
+        + "    vRing = ring;\n"
+        + "    vArc = arc;\n"
+        + "}\n";
+
+    private static final String FRAGMENT_SOURCE =
+        "#version 110\n"
+        + "varying vec4 vRing;\n"
+        + "varying vec2 vArc;\n"
+        + "void main() {\n"
+        + "    vec2 p = vRing.xy;\n"
+        + "    float pixel = length(fwidth(p)) * 0.7071;\n"
+        + "    float edge = abs(length(p) - vRing.z) / pixel;\n"
+        + "    float coverage = clamp(vRing.w + 0.5 - edge, 0.0, 1.0);\n"
+        + "    if (vArc.y < 6.2831 && mod(atan(p.y, p.x) - vArc.x, 6.2831853) > vArc.y) coverage = 0.0;\n"
+        + "    if (coverage <= 0.0) discard;\n"
+        + "    gl_FragColor = vec4(gl_Color.rgb, gl_Color.a * coverage);\n"
+        + "}\n";
+
+    // Clear of the slots some drivers alias to gl_Vertex, gl_Normal and gl_Color
+    private static final int RING_ATTRIBUTE = 6;
+    private static final int ARC_ATTRIBUTE = 7;
+    private static final int STRIDE_BYTES = 12 * 4;
+
+    private static final Logger log = Global.getLogger(RingShader.class);
+
+    private static boolean attempted = false;
+    private static int program = 0;
+
+    private RingShader() {
+    }
+
+    /** True once the program has compiled; tries to compile it on the first call. */
+    public static boolean isAvailable() {
+        if (!attempted) {
+            attempted = true;
+            program = createProgram();
+        }
+        return program != 0;
+    }
+
+    /**
+     * Binds the program and enables its attribute arrays for a run of
+     * {@link #draw} calls. Expects {@link #isAvailable()} to have returned true.
+     */
+    public static void begin() {
+        GL20.glEnableVertexAttribArray(RING_ATTRIBUTE);
+        GL20.glEnableVertexAttribArray(ARC_ATTRIBUTE);
+        GL20.glUseProgram(program);
+    }
+
+    public static void end() {
+        GL20.glUseProgram(0);
+        GL20.glDisableVertexAttribArray(ARC_ATTRIBUTE);
+        GL20.glDisableVertexAttribArray(RING_ATTRIBUTE);
+    }
+
+    /**
+     * Draws ring vertices as GL_TRIANGLES. Expects the vertex and color
+     * arrays enabled, as between a sink's beginBatch and endBatch, and
+     * {@link #begin()}.
+     */
+    public static void draw(FloatBuffer vertices, int vertexCount) {
+        vertices.position(0);
+        GL11.glVertexPointer(2, STRIDE_BYTES, vertices);
+        vertices.position(2);
+        GL11.glColorPointer(4, STRIDE_BYTES, vertices);
+        vertices.position(6);
+        GL20.glVertexAttribPointer(RING_ATTRIBUTE, 4, false, STRIDE_BYTES, vertices);
+        vertices.position(10);
+        GL20.glVertexAttribPointer(ARC_ATTRIBUTE, 2, false, STRIDE_BYTES, vertices);
+        GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, vertexCount);
+    }
+
+    private static int createProgram() {
+        if (!GLContext.getCapabilities().OpenGL20) {
+            log.info("OpenGL 2.0 not available, drawing rings as line segments");
+            return 0;
+        }
+
+        int vertexShader = compile(GL20.GL_VERTEX_SHADER, VERTEX_SOURCE);
+        int fragmentShader = compile(GL20.GL_FRAGMENT_SHADER, FRAGMENT_SOURCE);
+        if (vertexShader == 0 || fragmentShader == 0) {
+            if (vertexShader != 0) GL20.glDeleteShader(vertexShader);
+            if (fragmentShader != 0) GL20.glDeleteShader(fragmentShader);
+            return 0;
+        }
+
+        int id = GL20.glCreateProgram();
+        GL20.glAttachShader(id, vertexShader);
+        GL20.glAttachShader(id, fragmentShader);
+        GL20.glBindAttribLocation(id, RING_ATTRIBUTE, "ring");
+        GL20.glBindAttribLocation(id, ARC_ATTRIBUTE, "arc");
+        GL20.glLinkProgram(id);
+        GL20.glDeleteShader(vertexShader);
+        GL20.glDeleteShader(fragmentShader);
+
+        if (GL20.glGetProgrami(id, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
+            log.warn("Ring shader failed to link, drawing rings as line segments: "
+                     + GL20.glGetProgramInfoLog(id, 4096));
+            GL20.glDeleteProgram(id);
+            return 0;
+        }
+        return id;
+    }
+
+    private static int compile(int type, String source) {
+        int shader = GL20.glCreateShader(type);
+        GL20.glShaderSource(shader, source);
+        GL20.glCompileShader(shader);
+        if (GL20.glGetShaderi(shader, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
+            log.warn("Ring shader failed to compile, drawing rings as line segments: "
+                     + GL20.glGetShaderInfoLog(shader, 4096));
+            GL20.glDeleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+}
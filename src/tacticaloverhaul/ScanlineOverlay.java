@@ -0,0 +1,86 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ViewportAPI;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Faint horizontal scanlines across the screen while tactical mode is on.
+ *
+ * Drawn as a single viewport-sized quad with a tiny repeating texture (one
+ * opaque row, then transparent rows), so the cost is the same at any zoom
+ * or resolution instead of one line per few pixels of screen height.
+ * The texture is generated on first use and kept for the session.
+ */
+public final class ScanlineOverlay {
+
+    // One line every LINE_SPACING screen pixels, one pixel thick
+    private static final int LINE_SPACING = 4;
+    private static final int TEXTURE_WIDTH = 4;
+
+    private static int textureId = 0;
+
+    private ScanlineOverlay() {
+    }
+
+    /**
+     * Draws the scanlines over the viewport. Leaves GL_TEXTURE_2D disabled.
+     *
+     * @param color packed RGB of the lines; alpha is taken from the alpha argument
+     * @param alpha 0-1 opacity of the lines
+     */
+    public static void render(ViewportAPI viewport, int color, float alpha) {
+        if (textureId == 0) {
+            textureId = createTexture();
+        }
+
+        float llx = viewport.getLLX();
+        float lly = viewport.getLLY();
+        float w = viewport.getVisibleWidth();
+        float h = viewport.getVisibleHeight();
+
+        // Texture repeats once per LINE_SPACING screen pixels, anchored to the bottom edge
+        float repeats = h / viewport.getViewMult() / LINE_SPACING;
+
+        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureId);
+        GL11.glColor4f(TacticalColors.redf(color), TacticalColors.greenf(color),
+                       TacticalColors.bluef(color), alpha);
+
+        GL11.glBegin(GL11.GL_QUADS);
+        GL11.glTexCoord2f(0f, 0f);
+        GL11.glVertex2f(llx, lly);
+        GL11.glTexCoord2f(1f, 0f);
+        GL11.glVertex2f(llx + w, lly);
+        GL11.glTexCoord2f(1f, repeats);
+        GL11.glVertex2f(llx + w, lly + h);
+        GL11.glTexCoord2f(0f, repeats);
+        GL11.glVertex2f(llx, lly + h);
+        GL11.glEnd();
+
+        GL11.glDisable(GL11.GL_TEXTURE_2D);
+    }
+
+    private static int createTexture() {
+        ByteBuffer pixels = BufferUtils.createByteBuffer(TEXTURE_WIDTH * LINE_SPACING * 4);
+        for (int row = 0; row < LINE_SPACING; row++) {
+            byte rowAlpha = (byte) (row == 0 ? 255 : 0);
+            for (int col = 0; col < TEXTURE_WIDTH; col++) {
+                pixels.put((byte) 255).put((byte) 255).put((byte) 255).put(rowAlpha);
+            }
+        }
+        pixels.flip();
+
+        int id = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, id);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL11.GL_REPEAT);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL11.GL_REPEAT);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, TEXTURE_WIDTH, LINE_SPACING, 0,
+                          GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixels);
+        return id;
+    }
+}
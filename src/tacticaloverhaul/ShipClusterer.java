@@ -0,0 +1,356 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ShipAPI;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Groups nearby same-owner ships into clusters for the zoomed-out overlay.
+ *
+ * Clusters persist between frames: each ship stays in its cluster until it
+ * strays past the leave distance from the cluster's centroid, loose ships
+ * join the nearest same-owner cluster within the join distance or start
+ * their own, and clusters whose centroids drift close together merge.
+ * Distances are given in screen pixels, so clusters keep their on-screen
+ * size as the zoom changes. Fighters are left out.
+ *
+ * Per-ship results are indexed like the {@link BattleSnapshot} they were
+ * computed from. Cluster ids are small ints, reused once a cluster empties.
+ */
+public class ShipClusterer {
+
+    // Join and leave distances in screen pixels; leave > join so ships on the
+    // edge don't flicker between clusters
+    private static final float JOIN_PIXELS = 45f;
+    private static final float LEAVE_PIXELS = 70f;
+    private static final float MERGE_PIXELS = 35f;
+
+    private static final int GRID_SIZE = 256; // Power of two
+    private static final int GRID_MASK = GRID_SIZE - 1;
+
+    // Ship -> cluster id, carried across frames
+    private final IdentityHashMap<ShipAPI, Integer> clusterOf = new IdentityHashMap<>();
+
+    // Per snapshot index: cluster id, or -1 for fighters
+    private int[] shipCluster = new int[128];
+
+    // Per cluster id
+    private int clusterCapacity = 0;
+    private boolean[] live = new boolean[0];
+    private int[] owner = new int[0];
+    private int[] members = new int[0];
+    private float[] sumX = new float[0];
+    private float[] sumY = new float[0];
+    private float[] centerX = new float[0];
+    private float[] centerY = new float[0];
+    private float[] extent = new float[0];
+    private float[] fluxSum = new float[0];
+    private int[] weight = new int[0];
+    private int[] mergeInto = new int[0];
+    private int[] gridNext = new int[0];
+    private int[] freeIds = new int[0];
+    private int freeCount = 0;
+    private int highestId = 0;
+
+    // Cluster centroids bucketed by cell of the join distance
+    private final int[] gridHead = new int[GRID_SIZE];
+    private float gridCell = 1f;
+
+    /**
+     * Brings the clusters up to date with the snapshot.
+     *
+     * @param viewMult world units per screen pixel
+     */
+    public void update(BattleSnapshot s, float viewMult) {
+        int n = s.shipCount;
+        if (shipCluster.length < n) shipCluster = new int[Math.max(n, shipCluster.length * 2)];
+
+        float joinDistance = JOIN_PIXELS * viewMult;
+        float leaveDistance = LEAVE_PIXELS * viewMult;
+        float mergeDistance = MERGE_PIXELS * viewMult;
+
+        for (int c = 0; c < highestId; c++) resetAccumulators(c);
+
+        // Keep ships in the cluster they were in last frame
+        for (int i = 0; i < n; i++) {
+            shipCluster[i] = -1;
+            if (s.isFighter(i)) continue;
+
+            Integer known = clusterOf.get(s.ships[i]);
+            int c = known != null ? known : -1;
+            if (c >= 0 && (c >= highestId || !live[c] || owner[c] != s.owner[i])) c = -1;
+            shipCluster[i] = c;
+            if (c >= 0) add(c, s, i);
+        }
+        updateCenters();
+
+        // Ships that strayed too far leave
+        float leaveSq = leaveDistance * leaveDistance;
+        for (int i = 0; i < n; i++) {
+            int c = shipCluster[i];
+            if (c < 0 || members[c] == 1) continue;
+            float dx = s.x[i] - centerX[c];
+            float dy = s.y[i] - centerY[c];
+            if (dx * dx + dy * dy > leaveSq) {
+                remove(c, s, i);
+                shipCluster[i] = -2;
+            }
+        }
+        for (int c = 0; c < highestId; c++) {
+            if (live[c] && members[c] == 0) release(c);
+        }
+        updateCenters();
+        buildGrid(joinDistance);
+
+        // Loose ships join the nearest cluster in range or start their own
+        for (int i = 0; i < n; i++) {
+            if (s.isFighter(i) || shipCluster[i] >= 0) continue;
+
+            int c = nearestCluster(s.x[i], s.y[i], s.owner[i], joinDistance, -1);
+            if (c < 0) {
+                c = allocate(s.owner[i]);
+                add(c, s, i);
+                centerX[c] = s.x[i];
+                centerY[c] = s.y[i];
+                insertIntoGrid(c);
+            } else {
+                add(c, s, i);
+            }
+            shipCluster[i] = c;
+        }
+        updateCenters();
+
+        // Clusters that have drifted together merge into the larger one
+        buildGrid(joinDistance);
+        boolean merged = false;
+        for (int c = 0; c < highestId; c++) mergeInto[c] = -1;
+        for (int c = 0; c < highestId; c++) {
+            if (!live[c] || mergeInto[c] >= 0) continue;
+            int other = nearestCluster(centerX[c], centerY[c], owner[c], mergeDistance, c);
+            if (other < 0 || mergeInto[other] >= 0) continue;
+
+            // A cluster takes part in at most one merge per frame
+            int keep = members[c] >= members[other] ? c : other;
+            int drop = keep == c ? other : c;
+            mergeInto[keep] = keep;
+            mergeInto[drop] = keep;
+            merged = true;
+        }
+        if (merged) {
+            for (int i = 0; i < n; i++) {
+                int c = shipCluster[i];
+                if (c >= 0 && mergeInto[c] >= 0 && mergeInto[c] != c) {
+                    remove(c, s, i);
+                    shipCluster[i] = mergeInto[c];
+                    add(shipCluster[i], s, i);
+                }
+            }
+            for (int c = 0; c < highestId; c++) {
+                if (mergeInto[c] >= 0 && mergeInto[c] != c) release(c);
+            }
+            updateCenters();
+        }
+
+        // Extents, and remember each ship's cluster for next frame
+        for (int i = 0; i < n; i++) {
+            int c = shipCluster[i];
+            if (c < 0) continue;
+
+            float dx = s.x[i] - centerX[c];
+            float dy = s.y[i] - centerY[c];
+            float reach = (float) Math.sqrt(dx * dx + dy * dy) + s.radius[i];
+            if (reach > extent[c]) extent[c] = reach;
+
+            Integer known = clusterOf.get(s.ships[i]);
+            if (known == null || known != c) clusterOf.put(s.ships[i], c);
+        }
+
+        // Drop ships that have left the battle now and then
+        if (clusterOf.size() > n * 2 + 64) {
+            clusterOf.clear();
+            for (int i = 0; i < n; i++) {
+                if (shipCluster[i] >= 0) clusterOf.put(s.ships[i], shipCluster[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        clusterOf.clear();
+        for (int c = 0; c < highestId; c++) live[c] = false;
+        highestId = 0;
+        freeCount = 0;
+    }
+
+    /** Cluster of the ship at this snapshot index, or -1 for fighters. */
+    public int getCluster(int shipIndex) {
+        return shipCluster[shipIndex];
+    }
+
+    /** Upper bound (exclusive) on cluster ids currently in use. */
+    public int getIdLimit() {
+        return highestId;
+    }
+
+    public boolean isLive(int cluster) {
+        return live[cluster];
+    }
+
+    public int getMemberCount(int cluster) {
+        return members[cluster];
+    }
+
+    public int getOwner(int cluster) {
+        return owner[cluster];
+    }
+
+    public float getCenterX(int cluster) {
+        return centerX[cluster];
+    }
+
+    public float getCenterY(int cluster) {
+        return centerY[cluster];
+    }
+
+    /** Distance from the centroid to the far edge of the farthest member. */
+    public float getExtent(int cluster) {
+        return extent[cluster];
+    }
+
+    /** Sum of hull class weights, see {@link #hullWeight}. */
+    public int getHullWeight(int cluster) {
+        return weight[cluster];
+    }
+
+    public float getAverageFlux(int cluster) {
+        return members[cluster] > 0 ? fluxSum[cluster] / members[cluster] : 0f;
+    }
+
+    /** Frigate 1, destroyer 2, cruiser 4, capital 8. */
+    public static int hullWeight(ShipAPI.HullSize size) {
+        switch (size) {
+            case CAPITAL_SHIP: return 8;
+            case CRUISER: return 4;
+            case DESTROYER: return 2;
+            case FRIGATE: return 1;
+            default: return 0;
+        }
+    }
+
+    private void add(int c, BattleSnapshot s, int i) {
+        members[c]++;
+        sumX[c] += s.x[i];
+        sumY[c] += s.y[i];
+        fluxSum[c] += s.flux[i];
+        weight[c] += hullWeight(s.getHullSize(i));
+    }
+
+    private void remove(int c, BattleSnapshot s, int i) {
+        members[c]--;
+        sumX[c] -= s.x[i];
+        sumY[c] -= s.y[i];
+        fluxSum[c] -= s.flux[i];
+        weight[c] -= hullWeight(s.getHullSize(i));
+    }
+
+    private void resetAccumulators(int c) {
+        members[c] = 0;
+        sumX[c] = 0f;
+        sumY[c] = 0f;
+        fluxSum[c] = 0f;
+        weight[c] = 0;
+        extent[c] = 0f;
+    }
+
+    private void updateCenters() {
+        for (int c = 0; c < highestId; c++) {
+            if (!live[c] || members[c] == 0) continue;
+            centerX[c] = sumX[c] / members[c];
+            centerY[c] = sumY[c] / members[c];
+        }
+    }
+
+    private int nearestCluster(float x, float y, int ownerId, float maxDistance, int exclude) {
+        int best = -1;
+        float bestSq = maxDistance * maxDistance;
+        int cellX = cellOf(x);
+        int cellY = cellOf(y);
+
+        for (int cy = cellY - 1; cy <= cellY + 1; cy++) {
+            for (int cx = cellX - 1; cx <= cellX + 1; cx++) {
+                for (int c = gridHead[slot(cx, cy)]; c >= 0; c = gridNext[c]) {
+                    if (c == exclude || owner[c] != ownerId || members[c] == 0) continue;
+                    float dx = centerX[c] - x;
+                    float dy = centerY[c] - y;
+                    float distSq = dx * dx + dy * dy;
+                    if (distSq <= bestSq) {
+                        best = c;
+                        bestSq = distSq;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private void buildGrid(float cellSize) {
+        gridCell = cellSize;
+        Arrays.fill(gridHead, -1);
+        for (int c = 0; c < highestId; c++) {
+            if (live[c] && members[c] > 0) insertIntoGrid(c);
+        }
+    }
+
+    private void insertIntoGrid(int c) {
+        int slot = slot(cellOf(centerX[c]), cellOf(centerY[c]));
+        gridNext[c] = gridHead[slot];
+        gridHead[slot] = c;
+    }
+
+    private int cellOf(float coord) {
+        return (int) Math.floor(coord / gridCell);
+    }
+
+    private static int slot(int cx, int cy) {
+        return (cx * 73856093 ^ cy * 19349663) & GRID_MASK;
+    }
+
+    private int allocate(int ownerId) {
+        int c;
+        if (freeCount > 0) {
+            c = freeIds[--freeCount];
+        } else {
+            if (highestId == clusterCapacity) grow();
+            c = highestId++;
+            mergeInto[c] = -1;
+        }
+        live[c] = true;
+        owner[c] = ownerId;
+        resetAccumulators(c);
+        return c;
+    }
+
+    private void release(int c) {
+        live[c] = false;
+        members[c] = 0;
+        freeIds[freeCount++] = c;
+    }
+
+    private void grow() {
+        int newSize = Math.max(32, clusterCapacity * 2);
+        live = Arrays.copyOf(live, newSize);
+        owner = Arrays.copyOf(owner, newSize);
+        members = Arrays.copyOf(members, newSize);
+        sumX = Arrays.copyOf(sumX, newSize);
+        sumY = Arrays.copyOf(sumY, newSize);
+        centerX = Arrays.copyOf(centerX, newSize);
+        centerY = Arrays.copyOf(centerY, newSize);
+        extent = Arrays.copyOf(extent, newSize);
+        fluxSum = Arrays.copyOf(fluxSum, newSize);
+        weight = Arrays.copyOf(weight, newSize);
+        mergeInto = Arrays.copyOf(mergeInto, newSize);
+        gridNext = Arrays.copyOf(gridNext, newSize);
+        freeIds = Arrays.copyOf(freeIds, newSize);
+        clusterCapacity = newSize;
+    }
+}
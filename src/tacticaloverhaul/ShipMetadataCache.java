@@ -0,0 +1,340 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.characters.PersonAPI;
+import com.fs.starfarer.api.combat.DerivedWeaponStatsAPI;
+import com.fs.starfarer.api.combat.MutableShipStatsAPI;
+import com.fs.starfarer.api.combat.ShipAPI;
+import com.fs.starfarer.api.combat.ShipVariantAPI;
+import com.fs.starfarer.api.combat.WeaponAPI;
+import com.fs.starfarer.api.combat.WeaponGroupAPI;
+import com.fs.starfarer.api.fleet.FleetMemberAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of per-ship data the overlay derives from weapons and hull: weapon
+ * ranges (overall and per group), damage output by range, the hull-size
+ * glyph and collision radius.
+ *
+ * Computed metadata is shared through a small LRU keyed by everything that
+ * sets a ship's ranges and damage when it deploys: hull, the weapon in each
+ * slot (autofitted and refit ships report their stock variant id), hullmods
+ * and s-mods, the captain and the fleet commander whose skills apply. The
+ * LRU lives for the whole game session so the same ships are not rescanned
+ * every battle. Each ship in the current battle keeps a reference to its
+ * entry and revalidates it cheaply:
+ * - every frame against the range stats ship systems and skills change
+ *   in combat: the ballistic, energy, missile, beam, beam PD and non-beam
+ *   PD range bonuses, and the range threshold and the multiplier past it;
+ * - every {@link #WEAPON_RECHECK_INTERVAL} seconds against weapons being
+ *   disabled or repaired;
+ * - immediately after {@link #invalidate(ShipAPI)}.
+ * Changes in combat that the checks can't see keep the old numbers until
+ * the ship is invalidated: range modifiers from listeners added mid-battle,
+ * and rate-of-fire or damage bonuses, which only feed the DPS figures.
+ */
+public class ShipMetadataCache {
+
+    private static final int MAX_CACHED_LOADOUTS = 256;
+    private static final float WEAPON_RECHECK_INTERVAL = 1f;
+
+    // Reference value for sampling the range bonuses; only changes matter
+    private static final float RANGE_PROBE = 1000f;
+
+    // Sampled range stats: six range bonuses, then threshold and multiplier
+    private static final int PROBE_COUNT = 8;
+
+    /**
+     * Derived data for one loadout under one set of range stats. Immutable,
+     * so ships sharing a loadout can share an instance.
+     */
+    public static final class Metadata {
+        public final float maxRange;
+        public final float minRange;
+        private final float[] groupRanges;
+
+        // Weapon ranges, longest first, and the summed DPS of every weapon
+        // reaching at least that far
+        private final float[] threatRanges;
+        private final float[] threatDps;
+
+        public final float glyphSize;
+        public final float collisionRadius;
+
+        // What the ranges were computed under
+        final int weaponCount;
+        final int disabledCount;
+        private final float[] rangeProbes;
+
+        Metadata(float maxRange, float minRange, float[] groupRanges, float[] threatRanges, float[] threatDps,
+                 float glyphSize, float collisionRadius, int weaponCount, int disabledCount,
+                 float[] rangeProbes) {
+            this.maxRange = maxRange;
+            this.minRange = minRange;
+            this.groupRanges = groupRanges;
+            this.threatRanges = threatRanges;
+            this.threatDps = threatDps;
+            this.glyphSize = glyphSize;
+            this.collisionRadius = collisionRadius;
+            this.weaponCount = weaponCount;
+            this.disabledCount = disabledCount;
+            this.rangeProbes = rangeProbes.clone();
+        }
+
+        public int getGroupCount() {
+            return groupRanges.length;
+        }
+
+        /** Longest range in the given weapon group, 0 if the group is empty or out of bounds. */
+        public float getGroupRange(int group) {
+            return group >= 0 && group < groupRanges.length ? groupRanges[group] : 0f;
+        }
+
+        /** Summed DPS of the weapons that can reach the given distance. */
+        public float getDpsAt(float distance) {
+            float dps = 0f;
+            for (int i = 0; i < threatRanges.length && threatRanges[i] >= distance; i++) {
+                dps = threatDps[i];
+            }
+            return dps;
+        }
+
+        boolean matchesRangeStats(float[] probes) {
+            for (int i = 0; i < PROBE_COUNT; i++) {
+                if (probes[i] != rangeProbes[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class ShipEntry {
+        Metadata metadata;
+        float nextWeaponCheck;
+        boolean invalid;
+    }
+
+    // Shared across battles; access-ordered so the least recently used loadout is dropped
+    private static final Map<String, Metadata> BY_LOADOUT =
+        new LinkedHashMap<String, Metadata>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Metadata> eldest) {
+                return size() > MAX_CACHED_LOADOUTS;
+            }
+        };
+
+    // Ships in the current battle
+    private final IdentityHashMap<ShipAPI, ShipEntry> byShip = new IdentityHashMap<>();
+
+    // Range stats of the ship being looked up
+    private final float[] probes = new float[PROBE_COUNT];
+
+    /**
+     * Metadata for the ship, reusing the cached entry while it is still valid.
+     *
+     * @param now combat time in seconds, used to pace the disabled-weapon recheck
+     */
+    public Metadata get(ShipAPI ship, float now) {
+        sampleRangeStats(ship.getMutableStats(), probes);
+
+        ShipEntry entry = byShip.get(ship);
+        if (entry == null) {
+            entry = new ShipEntry();
+            byShip.put(ship, entry);
+            entry.invalid = true;
+        }
+
+        Metadata metadata = entry.metadata;
+        boolean valid = !entry.invalid && metadata != null
+            && metadata.matchesRangeStats(probes);
+
+        if (valid && now >= entry.nextWeaponCheck) {
+            entry.nextWeaponCheck = now + WEAPON_RECHECK_INTERVAL;
+            valid = countDisabled(ship.getAllWeapons()) == metadata.disabledCount;
+        }
+
+        if (!valid) {
+            entry.metadata = lookupOrCompute(ship, probes);
+            entry.nextWeaponCheck = now + WEAPON_RECHECK_INTERVAL;
+            entry.invalid = false;
+        }
+
+        return entry.metadata;
+    }
+
+    /**
+     * Forces the ship's metadata to be recomputed on the next {@link #get}.
+     * For changes the automatic checks can't see.
+     */
+    public void invalidate(ShipAPI ship) {
+        ShipEntry entry = byShip.get(ship);
+        if (entry != null) {
+            entry.invalid = true;
+        }
+    }
+
+    /** Forgets ships from the current battle; the loadout cache is kept. */
+    public void clear() {
+        byShip.clear();
+    }
+
+    private static void sampleRangeStats(MutableShipStatsAPI stats, float[] out) {
+        out[0] = stats.getBallisticWeaponRangeBonus().computeEffective(RANGE_PROBE);
+        out[1] = stats.getEnergyWeaponRangeBonus().computeEffective(RANGE_PROBE);
+        out[2] = stats.getMissileWeaponRangeBonus().computeEffective(RANGE_PROBE);
+        out[3] = stats.getBeamWeaponRangeBonus().computeEffective(RANGE_PROBE);
+        out[4] = stats.getBeamPDWeaponRangeBonus().computeEffective(RANGE_PROBE);
+        out[5] = stats.getNonBeamPDWeaponRangeBonus().computeEffective(RANGE_PROBE);
+        out[6] = stats.getWeaponRangeThreshold().getModifiedValue();
+        out[7] = stats.getWeaponRangeMultPastThreshold().getModifiedValue();
+    }
+
+    private Metadata lookupOrCompute(ShipAPI ship, float[] probes) {
+        List<WeaponAPI> weapons = ship.getAllWeapons();
+        int disabled = countDisabled(weapons);
+        String key = loadoutKey(ship);
+
+        // Only intact loadouts are shared; damaged ones are specific to this ship
+        if (key != null && disabled == 0) {
+            Metadata cached = BY_LOADOUT.get(key);
+            if (cached != null && cached.disabledCount == 0 && cached.weaponCount == weapons.size()
+                && cached.matchesRangeStats(probes)) {
+                return cached;
+            }
+        }
+
+        Metadata computed = compute(ship, weapons, disabled, probes);
+        if (key != null && disabled == 0) {
+            BY_LOADOUT.put(key, computed);
+        }
+        return computed;
+    }
+
+    private static Metadata compute(ShipAPI ship, List<WeaponAPI> weapons, int disabled, float[] probes) {
+        float maxRange = 0f;
+        float minRange = Float.MAX_VALUE;
+        for (int i = 0; i < weapons.size(); i++) {
+            WeaponAPI weapon = weapons.get(i);
+            if (weapon.isDecorative() || weapon.isDisabled()) continue;
+            float range = weapon.getRange();
+            if (range > maxRange) maxRange = range;
+            if (range < minRange) minRange = range;
+        }
+        if (minRange == Float.MAX_VALUE) minRange = 0f;
+
+        List<WeaponGroupAPI> groups = ship.getWeaponGroupsCopy();
+        float[] groupRanges = new float[groups != null ? groups.size() : 0];
+        for (int g = 0; g < groupRanges.length; g++) {
+            List<WeaponAPI> groupWeapons = groups.get(g).getWeaponsCopy();
+            float groupMax = 0f;
+            for (int i = 0; i < groupWeapons.size(); i++) {
+                WeaponAPI weapon = groupWeapons.get(i);
+                if (weapon.isDecorative() || weapon.isDisabled()) continue;
+                groupMax = Math.max(groupMax, weapon.getRange());
+            }
+            groupRanges[g] = groupMax;
+        }
+
+        // Ranges longest first; insertion sort, loadouts are small
+        int armed = 0;
+        float[] threatRanges = new float[weapons.size()];
+        float[] threatDps = new float[weapons.size()];
+        for (int i = 0; i < weapons.size(); i++) {
+            WeaponAPI weapon = weapons.get(i);
+            if (weapon.isDecorative() || weapon.isDisabled()) continue;
+            DerivedWeaponStatsAPI stats = weapon.getDerivedStats();
+            float range = weapon.getRange();
+            float dps = stats != null ? stats.getDps() : 0f;
+            int at = armed++;
+            while (at > 0 && threatRanges[at - 1] < range) {
+                threatRanges[at] = threatRanges[at - 1];
+                threatDps[at] = threatDps[at - 1];
+                at--;
+            }
+            threatRanges[at] = range;
+            threatDps[at] = dps;
+        }
+        threatRanges = Arrays.copyOf(threatRanges, armed);
+        threatDps = Arrays.copyOf(threatDps, armed);
+        for (int i = 1; i < armed; i++) {
+            threatDps[i] += threatDps[i - 1];
+        }
+
+        return new Metadata(maxRange, minRange, groupRanges, threatRanges, threatDps,
+                            glyphSizeFor(ship.getHullSize()), ship.getCollisionRadius(),
+                            weapons.size(), disabled, probes);
+    }
+
+    private static int countDisabled(List<WeaponAPI> weapons) {
+        int disabled = 0;
+        for (int i = 0; i < weapons.size(); i++) {
+            WeaponAPI weapon = weapons.get(i);
+            if (!weapon.isDecorative() && weapon.isDisabled()) disabled++;
+        }
+        return disabled;
+    }
+
+    /**
+     * Hull id, the weapon fitted in each slot, hullmods, s-mods, captain and
+     * fleet commander, collections in sorted order. Built only when a ship's
+     * metadata is recomputed, not per frame.
+     */
+    private static String loadoutKey(ShipAPI ship) {
+        ShipVariantAPI variant = ship.getVariant();
+        if (variant == null) return null;
+
+        StringBuilder key = new StringBuilder(64);
+        key.append(variant.getHullSpec() != null ? variant.getHullSpec().getHullId() : variant.getHullVariantId());
+
+        Collection<String> fitted = variant.getFittedWeaponSlots();
+        if (fitted != null) {
+            List<String> slots = new ArrayList<>(fitted);
+            Collections.sort(slots);
+            for (int i = 0; i < slots.size(); i++) {
+                String slot = slots.get(i);
+                key.append('|').append(slot).append('=').append(variant.getWeaponId(slot));
+            }
+        }
+
+        appendSorted(key, "|mods:", variant.getHullMods());
+        appendSorted(key, "|smods:", variant.getSMods());
+
+        PersonAPI captain = ship.getCaptain();
+        key.append("|captain:").append(captain != null ? captain.getId() : "");
+        FleetMemberAPI member = ship.getFleetMember();
+        PersonAPI commander = member != null ? member.getFleetCommander() : null;
+        key.append("|commander:").append(commander != null ? commander.getId() : "");
+        return key.toString();
+    }
+
+    private static void appendSorted(StringBuilder key, String label, Collection<String> values) {
+        key.append(label);
+        if (values == null || values.isEmpty()) return;
+
+        List<String> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i > 0) key.append(',');
+            key.append(sorted.get(i));
+        }
+    }
+
+    /** Half-size of the hull-class diamond drawn under a ship, 0 for none. */
+    public static float glyphSizeFor(ShipAPI.HullSize size) {
+        switch (size) {
+            case CAPITAL_SHIP: return 12f;
+            case CRUISER: return 9f;
+            case DESTROYER: return 6f;
+            case FRIGATE: return 4f;
+            default: return 0f;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ShipAPI;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * The player's current ship selection.
+ *
+ * Ships are kept in a list for indexed iteration plus an identity map from
+ * ship to list position, so membership tests, adds and removes are O(1)
+ * however large the selection gets. Removal swaps the last ship into the
+ * gap, so iteration order is not the order ships were selected in.
+ */
+public class ShipSelection {
+
+    private final List<ShipAPI> ships = new ArrayList<>();
+    private final IdentityHashMap<ShipAPI, Integer> positions = new IdentityHashMap<>();
+    private int version = 0;
+
+    public int size() {
+        return ships.size();
+    }
+
+    public boolean isEmpty() {
+        return ships.isEmpty();
+    }
+
+    public ShipAPI get(int index) {
+        return ships.get(index);
+    }
+
+    public boolean contains(ShipAPI ship) {
+        return positions.containsKey(ship);
+    }
+
+    /** Bumped whenever the set of selected ships changes. */
+    public int getVersion() {
+        return version;
+    }
+
+    /** @return true if the ship was not already selected */
+    public boolean add(ShipAPI ship) {
+        if (positions.containsKey(ship)) return false;
+        positions.put(ship, ships.size());
+        ships.add(ship);
+        version++;
+        return true;
+    }
+
+    /** @return true if the ship was selected */
+    public boolean remove(ShipAPI ship) {
+        Integer position = positions.remove(ship);
+        if (position == null) return false;
+
+        int last = ships.size() - 1;
+        ShipAPI moved = ships.remove(last);
+        if (position != last) {
+            ships.set(position, moved);
+            positions.put(moved, position);
+        }
+        version++;
+        return true;
+    }
+
+    public void toggle(ShipAPI ship) {
+        if (!remove(ship)) add(ship);
+    }
+
+    public void clear() {
+        if (!ships.isEmpty()) version++;
+        ships.clear();
+        positions.clear();
+    }
+
+    /** Drops ships that have died or become hulks since they were selected. */
+    public void removeDead() {
+        for (int i = ships.size() - 1; i >= 0; i--) {
+            ShipAPI ship = ships.get(i);
+            if (!ship.isAlive() || ship.isHulk()) {
+                remove(ship);
+            }
+        }
+    }
+}
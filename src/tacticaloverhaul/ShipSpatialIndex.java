@@ -0,0 +1,197 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.combat.ShipAPI;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform-grid spatial hash of the pickable ships in a battle.
+ *
+ * Rebuilt once per frame from the {@link BattleSnapshot}, keeping only
+ * non-fighter ships (the snapshot already drops hulks and shuttle pods).
+ * Each ship is filed under the cell holding its center; queries widen
+ * their search by the largest collision radius seen this frame so big
+ * ships poking into neighbouring cells are still hit.
+ *
+ * All storage is reused between frames, so rebuilding and querying do not
+ * allocate once the arrays have grown to the battle's size.
+ */
+public class ShipSpatialIndex {
+
+    private static final float CELL_SIZE = 600f;
+    private static final int TABLE_SIZE = 1024; // Power of two
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+    // Hash slot -> first entry, entries chained through next[]
+    private final int[] slotHead = new int[TABLE_SIZE];
+
+    private int count = 0;
+    private ShipAPI[] ships = new ShipAPI[128];
+    private float[] xs = new float[128];
+    private float[] ys = new float[128];
+    private float[] radii = new float[128];
+    private int[] cellXs = new int[128];
+    private int[] cellYs = new int[128];
+    private int[] next = new int[128];
+
+    private float maxRadius = 0f;
+
+    public ShipSpatialIndex() {
+        Arrays.fill(slotHead, -1);
+    }
+
+    public void rebuild(BattleSnapshot snapshot) {
+        clear();
+        for (int i = 0; i < snapshot.shipCount; i++) {
+            if (snapshot.isFighter(i)) continue;
+            insert(snapshot.ships[i], snapshot.x[i], snapshot.y[i], snapshot.radius[i]);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(slotHead, -1);
+        Arrays.fill(ships, 0, count, null);
+        count = 0;
+        maxRadius = 0f;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Closest ship whose collision circle contains the point, or null.
+     */
+    public ShipAPI shipAt(float x, float y) {
+        ShipAPI closest = null;
+        float closestDistSq = Float.MAX_VALUE;
+
+        int minCellX = cellOf(x - maxRadius);
+        int maxCellX = cellOf(x + maxRadius);
+        int minCellY = cellOf(y - maxRadius);
+        int maxCellY = cellOf(y + maxRadius);
+
+        for (int cy = minCellY; cy <= maxCellY; cy++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                for (int e = slotHead[slot(cx, cy)]; e >= 0; e = next[e]) {
+                    if (cellXs[e] != cx || cellYs[e] != cy) continue;
+
+                    float dx = xs[e] - x;
+                    float dy = ys[e] - y;
+                    float distSq = dx * dx + dy * dy;
+                    float r = radii[e];
+                    if (distSq < r * r && distSq < closestDistSq) {
+                        closest = ships[e];
+                        closestDistSq = distSq;
+                    }
+                }
+            }
+        }
+
+        return closest;
+    }
+
+    /**
+     * Adds every ship whose collision circle overlaps the given circle to out.
+     *
+     * @return number of ships added
+     */
+    public int queryRadius(float x, float y, float radius, List<ShipAPI> out) {
+        int added = 0;
+        float reach = radius + maxRadius;
+
+        int minCellX = cellOf(x - reach);
+        int maxCellX = cellOf(x + reach);
+        int minCellY = cellOf(y - reach);
+        int maxCellY = cellOf(y + reach);
+
+        for (int cy = minCellY; cy <= maxCellY; cy++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                for (int e = slotHead[slot(cx, cy)]; e >= 0; e = next[e]) {
+                    if (cellXs[e] != cx || cellYs[e] != cy) continue;
+
+                    float dx = xs[e] - x;
+                    float dy = ys[e] - y;
+                    float r = radius + radii[e];
+                    if (dx * dx + dy * dy < r * r) {
+                        out.add(ships[e]);
+                        added++;
+                    }
+                }
+            }
+        }
+
+        return added;
+    }
+
+    /**
+     * Adds every ship whose center lies inside the rectangle to out.
+     *
+     * @return number of ships added
+     */
+    public int queryRect(float minX, float minY, float maxX, float maxY, List<ShipAPI> out) {
+        int added = 0;
+
+        int minCellX = cellOf(minX);
+        int maxCellX = cellOf(maxX);
+        int minCellY = cellOf(minY);
+        int maxCellY = cellOf(maxY);
+
+        for (int cy = minCellY; cy <= maxCellY; cy++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                for (int e = slotHead[slot(cx, cy)]; e >= 0; e = next[e]) {
+                    if (cellXs[e] != cx || cellYs[e] != cy) continue;
+
+                    float x = xs[e];
+                    float y = ys[e];
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        out.add(ships[e]);
+                        added++;
+                    }
+                }
+            }
+        }
+
+        return added;
+    }
+
+    private void insert(ShipAPI ship, float x, float y, float radius) {
+        if (count == ships.length) grow();
+
+        int cx = cellOf(x);
+        int cy = cellOf(y);
+        int slot = slot(cx, cy);
+
+        ships[count] = ship;
+        xs[count] = x;
+        ys[count] = y;
+        radii[count] = radius;
+        cellXs[count] = cx;
+        cellYs[count] = cy;
+        next[count] = slotHead[slot];
+        slotHead[slot] = count;
+        count++;
+
+        if (radius > maxRadius) maxRadius = radius;
+    }
+
+    private void grow() {
+        int newSize = ships.length * 2;
+        ships = Arrays.copyOf(ships, newSize);
+        xs = Arrays.copyOf(xs, newSize);
+        ys = Arrays.copyOf(ys, newSize);
+        radii = Arrays.copyOf(radii, newSize);
+        cellXs = Arrays.copyOf(cellXs, newSize);
+        cellYs = Arrays.copyOf(cellYs, newSize);
+        next = Arrays.copyOf(next, newSize);
+    }
+
+    private static int cellOf(float coord) {
+        return (int) Math.floor(coord / CELL_SIZE);
+    }
+
+    private static int slot(int cx, int cy) {
+        return (cx * 73856093 ^ cy * 19349663) & TABLE_MASK;
+    }
+}
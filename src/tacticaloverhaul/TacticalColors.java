@@ -0,0 +1,45 @@
+package tacticaloverhaul;
+
+/**
+ * Packed ARGB colors for the tactical overlay.
+ *
+ * Colors are plain ints (0xAARRGGBB) so changing alpha per ship per frame
+ * costs a shift and an OR instead of a new java.awt.Color.
+ */
+public final class TacticalColors {
+
+    private TacticalColors() {
+    }
+
+    /** Opaque color from 0-255 components. */
+    public static int rgb(int r, int g, int b) {
+        return 0xFF000000 | (r & 0xFF) << 16 | (g & 0xFF) << 8 | (b & 0xFF);
+    }
+
+    /** Same color with its alpha replaced; alpha is 0-255 and clamped. */
+    public static int withAlpha(int color, int alpha) {
+        if (alpha < 0) alpha = 0;
+        if (alpha > 255) alpha = 255;
+        return (color & 0x00FFFFFF) | alpha << 24;
+    }
+
+    public static int alpha(int color) {
+        return color >>> 24;
+    }
+
+    public static float redf(int color) {
+        return ((color >> 16) & 0xFF) / 255f;
+    }
+
+    public static float greenf(int color) {
+        return ((color >> 8) & 0xFF) / 255f;
+    }
+
+    public static float bluef(int color) {
+        return (color & 0xFF) / 255f;
+    }
+
+    public static float alphaf(int color) {
+        return (color >>> 24) / 255f;
+    }
+}
@@ -0,0 +1,155 @@
+package tacticaloverhaul;
+
+/**
+ * Shared geometry helpers for the tactical overlay.
+ *
+ * Holds a precomputed unit-circle table so circles, arcs, facing lines and
+ * arrowheads never call Math.sin/cos per vertex, and picks how many segments
+ * a circle needs from its on-screen radius so small rings stay cheap and big
+ * range circles stay smooth.
+ */
+public final class TacticalGeometry {
+
+    /** Number of entries in the unit-circle table. Must be a power of two. */
+    public static final int TABLE_SIZE = 4096;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+    private static final float DEGREES_TO_INDEX = TABLE_SIZE / 360f;
+    private static final float RADIANS_TO_INDEX = (float) (TABLE_SIZE / (Math.PI * 2));
+
+    public static final int MIN_SEGMENTS = 8;
+    public static final int MAX_SEGMENTS = 256;
+
+    // Allowed distance between a chord and the true circle, in pixels
+    private static final float MAX_CHORD_ERROR_PIXELS = 0.5f;
+
+    private static final float[] COS = new float[TABLE_SIZE];
+    private static final float[] SIN = new float[TABLE_SIZE];
+
+    static {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            double angle = Math.PI * 2 * i / TABLE_SIZE;
+            COS[i] = (float) Math.cos(angle);
+            SIN[i] = (float) Math.sin(angle);
+        }
+    }
+
+    private TacticalGeometry() {
+    }
+
+    public static float cos(int index) {
+        return COS[index & TABLE_MASK];
+    }
+
+    public static float sin(int index) {
+        return SIN[index & TABLE_MASK];
+    }
+
+    /** Table index for an angle in degrees; any angle, including negative, is accepted. */
+    public static int indexForDegrees(float degrees) {
+        return ((int) (degrees * DEGREES_TO_INDEX + 0.5f)) & TABLE_MASK;
+    }
+
+    public static int indexForRadians(float radians) {
+        return ((int) (radians * RADIANS_TO_INDEX + 0.5f)) & TABLE_MASK;
+    }
+
+    public static float cosDegrees(float degrees) {
+        return COS[indexForDegrees(degrees)];
+    }
+
+    public static float sinDegrees(float degrees) {
+        return SIN[indexForDegrees(degrees)];
+    }
+
+    /**
+     * Segment count for a full circle of the given on-screen radius.
+     * Always a power of two so the table can be walked with an integer step.
+     */
+    public static int segmentsForScreenRadius(float radiusPixels) {
+        return segmentsForScreenRadius(radiusPixels, MAX_CHORD_ERROR_PIXELS);
+    }
+
+    /** As {@link #segmentsForScreenRadius(float)}, allowing the given chord error in pixels. */
+    public static int segmentsForScreenRadius(float radiusPixels, float maxErrorPixels) {
+        // Chord error is r * (1 - cos(pi / n)), roughly r * pi^2 / (2 n^2)
+        float needed = (float) (Math.PI * Math.sqrt(Math.max(0f, radiusPixels) / (2f * maxErrorPixels)));
+        int segments = MIN_SEGMENTS;
+        while (segments < needed && segments < MAX_SEGMENTS) {
+            segments <<= 1;
+        }
+        return segments;
+    }
+
+    /** Table step between consecutive vertices of a circle with this many segments. */
+    public static int stepForSegments(int segments) {
+        return TABLE_SIZE / segments;
+    }
+
+    /** True if any part of the disc overlaps the rectangle. */
+    public static boolean circleIntersectsRect(float cx, float cy, float radius,
+                                               float minX, float minY, float maxX, float maxY) {
+        float nearX = cx < minX ? minX : (cx > maxX ? maxX : cx);
+        float nearY = cy < minY ? minY : (cy > maxY ? maxY : cy);
+        float dx = cx - nearX;
+        float dy = cy - nearY;
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+    /**
+     * True if the circle's outline crosses the rectangle. Unlike
+     * {@link #circleIntersectsRect}, a ring that fully encloses the
+     * rectangle is not visible.
+     */
+    public static boolean ringIntersectsRect(float cx, float cy, float radius,
+                                             float minX, float minY, float maxX, float maxY) {
+        if (!circleIntersectsRect(cx, cy, radius, minX, minY, maxX, maxY)) return false;
+
+        float farX = Math.max(Math.abs(cx - minX), Math.abs(cx - maxX));
+        float farY = Math.max(Math.abs(cy - minY), Math.abs(cy - maxY));
+        return farX * farX + farY * farY >= radius * radius;
+    }
+
+    /**
+     * Clips the segment to the rectangle (Liang-Barsky).
+     *
+     * @param outT receives the visible parameter range [t0, t1] along the segment
+     * @return false if no part of the segment is inside the rectangle
+     */
+    public static boolean clipSegment(float x1, float y1, float x2, float y2,
+                                      float minX, float minY, float maxX, float maxY, float[] outT) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float t0 = 0f;
+        float t1 = 1f;
+
+        // Each edge as p * t <= q
+        for (int edge = 0; edge < 4; edge++) {
+            float p;
+            float q;
+            switch (edge) {
+                case 0: p = -dx; q = x1 - minX; break;
+                case 1: p = dx; q = maxX - x1; break;
+                case 2: p = -dy; q = y1 - minY; break;
+                default: p = dy; q = maxY - y1; break;
+            }
+
+            if (p == 0f) {
+                if (q < 0f) return false;
+                continue;
+            }
+
+            float t = q / p;
+            if (p < 0f) {
+                if (t > t1) return false;
+                if (t > t0) t0 = t;
+            } else {
+                if (t < t0) return false;
+                if (t < t1) t1 = t;
+            }
+        }
+
+        outT[0] = t0;
+        outT[1] = t1;
+        return true;
+    }
+}
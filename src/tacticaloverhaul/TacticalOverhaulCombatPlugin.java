@@ -2,14 +2,11 @@ package tacticaloverhaul;
 
 import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.combat.*;
-import org.lwjgl.opengl.GL11;
-
 import org.lwjgl.util.vector.Vector2f;
 
-import java.awt.Color;
-import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Combat plugin that renders an enhanced tactical view.
@@ -18,57 +15,224 @@ import java.util.List;
  * - Ship indicators with facing
  * - Weapon range circles
  * - Objective markers
+ * - Ship labels and status messages in bitmap text
  */
 public class TacticalOverhaulCombatPlugin extends BaseCombatLayeredRenderingPlugin {
 
-    private boolean tacticalModeActive = false;
-    private List<ShipAPI> selectedShips = new ArrayList<>();
+    // Battle state and overlay state for this frame, captured by the input plugin
+    private final BattleSnapshot snapshot;
+
+    // Engine and GL access; the game's own unless a stand-in was injected
+    private final Supplier<CombatEngineAPI> engineSource;
+    private final RenderSink sink;
+
+    // Player fleet orders, polled by the input plugin at a low rate
+    private final AssignmentTracker assignments;
+    private int orderStyleVersion = -1;
+    private int[] orderLineColors = new int[64];
+
     private float overlayAlpha = 0f;
     private float selectionPulse = 0f; // For pulsing selection indicator
-    private static final float OVERLAY_TARGET_ALPHA = 0.4f;
+    private final float overlayTargetAlpha; // From TacticalSettings
     private static final float OVERLAY_FADE_SPEED = 4.0f;
 
-    // Command visualization
-    private Vector2f commandTarget = null;
-    private ShipAPI commandAttackTarget = null;
-    private boolean showCommand = false;
-    private String displayMessage = null;
+    // Cached colors for performance (packed ARGB, alpha applied per use)
+    private static final int PLAYER_FLEET_COLOR = TacticalColors.rgb(100, 200, 255);
+    private static final int ENEMY_COLOR = TacticalColors.rgb(255, 100, 100);
+    private static final int NEUTRAL_COLOR = TacticalColors.rgb(200, 200, 200);
+    private static final int SELECTION_COLOR = TacticalColors.rgb(0, 255, 200);
+    private static final int WAYPOINT_COLOR = TacticalColors.rgb(100, 255, 150);
+    private static final int RETREAT_COLOR = TacticalColors.rgb(255, 200, 50);
+    private static final int OBJECTIVE_CONTESTED_COLOR = TacticalColors.rgb(255, 255, 100);
+    private static final int ATTACK_LINE_COLOR = TacticalColors.rgb(255, 100, 100);
+    private static final int FLUX_CRITICAL = TacticalColors.rgb(255, 50, 50);
+    private static final int FLUX_WARNING = TacticalColors.rgb(255, 200, 50);
+    private static final int FLUX_NORMAL = TacticalColors.rgb(100, 255, 100);
+    private static final int MESSAGE_COLOR = TacticalColors.rgb(255, 255, 200);
+    private static final int BRACKET_COLOR = TacticalColors.rgb(0, 255, 200); // Cyan tactical brackets
+
+    // Geometry that is redrawn every frame, collected here and drawn once
+    private final TacticalRenderBatch frameBatch = new TacticalRenderBatch();
+
+    // Slow layers keep their geometry in their own batch and rebuild it at a
+    // few Hz; in between it is drawn as is, moved along with the ships
+    private static final int LAYER_STATUS = 0; // Weapon range circles and flux arcs
+    private static final int LAYER_ORDERS = 1;
+    private static final int LAYER_OBJECTIVES = 2;
+    private static final int LAYER_COUNT = 3;
+    private final LayerScheduler layers = new LayerScheduler(10f, 10f, 5f);
+    private final TacticalRenderBatch[] layerBatches = new TacticalRenderBatch[LAYER_COUNT];
+    private boolean layersShown = false;
+    private int layerOrdersVersion = -1;
+    private boolean layerClustering = false;
+
+    // Slow layers are culled against the view grown by this fraction on each
+    // side, so panning doesn't force a rebuild every frame
+    private static final float LAYER_CULL_PADDING = 0.15f;
+
+    // Where the draw helpers write: the frame batch, or a layer's while it is rebuilt
+    private TacticalRenderBatch batch = frameBatch;
+    private float layerPadX = 0f;
+    private float layerPadY = 0f;
+
+    // Weapon ranges and hull data, recomputed only when they actually change
+    private final ShipMetadataCache metadataCache = new ShipMetadataCache();
+
+    // World units per screen pixel for the frame being drawn, used to pick circle detail
+    private float viewMult = 1f;
+
+    // Visible world rectangle for the frame being drawn, padded so thick lines
+    // and arrowheads at the screen edge are not cut off
+    private float viewMinX = 0f;
+    private float viewMinY = 0f;
+    private float viewMaxX = 0f;
+    private float viewMaxY = 0f;
+    private static final float CULL_MARGIN_PIXELS = 20f;
+    private final float[] clipT = new float[2];
+
+    // Circles and arcs go to the ring shader when the sink has one
+    private boolean rings = false;
+
+    // Layers and detail in use, see OverlayPreset; the governor takes detail
+    // away from the preset while the overlay runs over its frame budget
+    private OverlayPreset preset = null;
+    private FrameBudgetGovernor governor = new FrameBudgetGovernor();
+    // Time spent since the last render in this plugin's advance and the input
+    // plugin's, which does the capture, indexing and polling the overlay needs
+    private long advanceNanos = 0L;
+    private float circleErrorPixels = 0.5f; // Line-segment circles and ellipses only; rings are exact
+    private boolean velocityArrows = true;
+    private boolean selectedRangesOnly = false;
+    private int layerSelectionVersion = -1;
+
+    // The overlay covers the whole map; this is set from the map size once the engine is known
+    private float renderRadius = DEFAULT_RENDER_RADIUS;
+    private static final float DEFAULT_RENDER_RADIUS = 30000f;
+    private static final float RENDER_RADIUS_MARGIN = 4000f;
+
+    // Profiler HUD: one row per phase, anchored to the top-left of the screen
+    private static final float HUD_MARGIN_PIXELS = 40f;
+    private static final float HUD_ROW_PIXELS = 10f;
+    private static final float HUD_BAR_PIXELS = 7f;
+    private static final float HUD_PIXELS_PER_MICRO = 0.2f; // 1 ms = 200 px
+    private static final float HUD_MAX_BAR_PIXELS = 400f;
+    private static final int HUD_P50_COLOR = TacticalColors.rgb(100, 255, 100);
+    private static final int HUD_P95_COLOR = TacticalColors.rgb(255, 200, 50);
+    private static final int HUD_P99_COLOR = TacticalColors.rgb(255, 50, 50);
+    private static final int HUD_SCALE_COLOR = TacticalColors.rgb(200, 200, 200);
+
+    // Zoomed out past CLUSTER_ENTER_ZOOM (world units per pixel), nearby ships
+    // of the same side are drawn as one cluster glyph; back in below CLUSTER_EXIT_ZOOM
+    private static final float CLUSTER_ENTER_ZOOM = 3.0f;
+    private static final float CLUSTER_EXIT_ZOOM = 2.6f;
+    private static final float CLUSTER_WEIGHT_PIXELS = 4f; // Inner ring radius per sqrt(hull weight)
+    private static final float CLUSTER_PIP_PIXELS = 3f;
+    private static final int CLUSTER_MAX_PIPS = 12;
+    private final ShipClusterer clusterer = new ShipClusterer();
+    private boolean clustering = false;
+
+    // Fighters are drawn one glyph per wing: a marker at the wing's centroid,
+    // an ellipse two standard deviations wide, a pip per fighter and a line
+    // back to the carrier
+    private static final float WING_MARKER_PIXELS = 5f;
+    private static final float WING_PIP_PIXELS = 2f;
+    private static final int WING_MAX_PIPS = 12;
+    private final FighterWingGrouper wingGrouper = new FighterWingGrouper();
+
+    // Enemy threat heat map, computed off the game thread a few times a second
+    private static final float THREAT_UPDATE_INTERVAL = 0.25f;
+    private static final float THREAT_MAP_ALPHA = 0.8f;
+    private final ThreatMap threatMap = new ThreatMap();
+    private float threatUpdateTimer = 0f;
+    private boolean stopped = false;
+    private float mapWidth = 0f;
+    private float mapHeight = 0f;
+
+    // Ship labels (hull class and name, flux and range) below each ship's
+    // size indicator, drawn while zoomed in closer than LABEL_MAX_ZOOM;
+    // composed in labelChars so no label allocates
+    private static final float LABEL_MAX_ZOOM = 2f;
+    private static final float LABEL_GAP_PIXELS = 4f;
+    private static final int LABEL_MAX_NAME = 20;
+    private static final float MESSAGE_SCALE = 1.5f;
+    private static final float MESSAGE_TOP_PIXELS = 80f;
+    private final char[] labelChars = new char[64];
+    private int labelLength = 0;
+
+    // Above this many selected ships, each gets a single ring instead of rings and brackets
+    private static final int DETAILED_SELECTION_LIMIT = 16;
+
+    // Dash periods (dash plus gap, see DashTexture) for order and command lines;
+    // command lines flow towards their target
+    private static final float ORDER_DASH_PERIOD = 32f;
+    private static final float COMMAND_DASH_PERIOD = 48f;
+    private static final float DASH_FLOW_SPEED = 1.5f; // Periods per second
+    private float dashFlow = 0f;
+
+    // Arrowhead barbs sit 150 degrees either side of the direction of travel
+    private static final float ARROW_BARB_COS = TacticalGeometry.cosDegrees(150f);
+    private static final float ARROW_BARB_SIN = TacticalGeometry.sinDegrees(150f);
+
+    public TacticalOverhaulCombatPlugin(BattleSnapshot snapshot, AssignmentTracker assignments) {
+        this(snapshot, assignments, Global::getCombatEngine, GL11RenderSink.INSTANCE);
+    }
+
+    TacticalOverhaulCombatPlugin(BattleSnapshot snapshot, AssignmentTracker assignments,
+                                 Supplier<CombatEngineAPI> engineSource, RenderSink sink) {
+        this.snapshot = snapshot;
+        this.assignments = assignments;
+        this.engineSource = engineSource;
+        this.sink = sink;
+        this.overlayTargetAlpha = TacticalSettings.get().getOverlayAlpha();
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            layerBatches[i] = new TacticalRenderBatch();
+        }
+    }
 
-    // Cached colors for performance
-    private static final Color PLAYER_FLEET_COLOR = new Color(100, 200, 255);
-    private static final Color ENEMY_COLOR = new Color(255, 100, 100);
-    private static final Color NEUTRAL_COLOR = new Color(200, 200, 200);
-    private static final Color SELECTION_COLOR = new Color(0, 255, 200);
-    private static final Color WAYPOINT_COLOR = new Color(100, 255, 150);
-    private static final Color ATTACK_LINE_COLOR = new Color(255, 100, 100);
-    private static final Color FLUX_CRITICAL = new Color(255, 50, 50);
-    private static final Color FLUX_WARNING = new Color(255, 200, 50);
-    private static final Color FLUX_NORMAL = new Color(100, 255, 100);
-    private static final Color MESSAGE_COLOR = new Color(255, 255, 200);
-    private static final Color BRACKET_COLOR = new Color(0, 255, 200); // Cyan tactical brackets
+    /** Replaces the overlay's frame budget, starting again from full detail. */
+    void setFrameBudget(float budgetMillis) {
+        governor = new FrameBudgetGovernor(budgetMillis);
+        governor.setRingShader(rings);
+        if (preset != null) applyDetail();
+    }
 
-    public void setTacticalModeActive(boolean active) {
-        this.tacticalModeActive = active;
+    /** Adds the input plugin's advance time to what the governor sees this frame. */
+    void addInputNanos(long nanos) {
+        advanceNanos += nanos;
     }
 
-    public void setSelectedShips(List<ShipAPI> ships) {
-        this.selectedShips = ships != null ? ships : new ArrayList<>();
+    /** Current {@link FrameBudgetGovernor} detail level. */
+    int getDetailLevel() {
+        return governor.getLevel();
     }
 
-    public void setCommandTarget(Vector2f target, ShipAPI attackTarget, boolean show) {
-        this.commandTarget = target;
-        this.commandAttackTarget = attackTarget;
-        this.showCommand = show;
+    /** True while any part of the overlay is still being drawn, including the fade-out. */
+    public boolean isOverlayVisible() {
+        return snapshot.tacticalModeActive || overlayAlpha >= 0.001f;
     }
 
-    public void setMessage(String message) {
-        this.displayMessage = message;
+    @Override
+    public void init(CombatEntityAPI entity) {
+        super.init(entity);
+
+        // The plugin's entity sits at the map center; reach every corner plus
+        // room for range circles of ships near the edge
+        CombatEngineAPI engine = engineSource.get();
+        if (engine != null && engine.getMapWidth() > 0 && engine.getMapHeight() > 0) {
+            mapWidth = engine.getMapWidth();
+            mapHeight = engine.getMapHeight();
+            float halfDiagonal = 0.5f * (float) Math.sqrt(engine.getMapWidth() * engine.getMapWidth()
+                                                          + engine.getMapHeight() * engine.getMapHeight());
+            renderRadius = halfDiagonal + RENDER_RADIUS_MARGIN;
+        }
     }
 
     @Override
     public void advance(float amount) {
+        long advanceStart = System.nanoTime();
+
         // Smoothly fade the overlay in/out
-        float targetAlpha = tacticalModeActive ? OVERLAY_TARGET_ALPHA : 0f;
+        float targetAlpha = snapshot.tacticalModeActive ? overlayTargetAlpha : 0f;
         if (Math.abs(overlayAlpha - targetAlpha) > 0.001f) {
             float delta = targetAlpha - overlayAlpha;
             overlayAlpha += delta * Math.min(1.0f, OVERLAY_FADE_SPEED * amount);
@@ -79,193 +243,379 @@ public class TacticalOverhaulCombatPlugin extends BaseCombatLayeredRenderingPlug
         if (selectionPulse > Math.PI * 2) {
             selectionPulse -= Math.PI * 2;
         }
+        dashFlow += amount * DASH_FLOW_SPEED;
+        if (dashFlow > 1f) {
+            dashFlow -= (int) dashFlow;
+        }
+
+        // Feed the threat map while it's on screen and the battle is on
+        if (snapshot.threatMapVisible && snapshot.tacticalModeActive && !stopped) {
+            threatUpdateTimer -= amount;
+            if (threatUpdateTimer <= 0f) {
+                threatUpdateTimer = THREAT_UPDATE_INTERVAL;
+                submitThreatMap();
+            }
+        } else {
+            threatUpdateTimer = 0f;
+        }
+
+        advanceNanos += System.nanoTime() - advanceStart;
+    }
+
+    /**
+     * Stops background work for this battle and lets go of its threat map.
+     * Called when the battle ends and again on cleanup; safe to repeat.
+     */
+    public void shutdown() {
+        stopped = true;
+        threatMap.shutdown();
+        sink.releaseThreatMap(threatMap);
     }
 
+    @Override
+    public void cleanup() {
+        shutdown();
+    }
+
+    /**
+     * Hands the worker the hostile ships' positions and weapon profiles.
+     * The arrays are fresh each time (a few times a second) since the worker
+     * may still be reading the previous ones.
+     */
+    private void submitThreatMap() {
+        if (mapWidth <= 0f || mapHeight <= 0f) return;
+
+        BattleSnapshot s = snapshot;
+        int count = 0;
+        for (int i = 0; i < s.shipCount; i++) {
+            if (s.owner[i] == 1 && !s.isFighter(i)) count++;
+        }
+
+        float[] x = new float[count];
+        float[] y = new float[count];
+        ShipMetadataCache.Metadata[] weapons = new ShipMetadataCache.Metadata[count];
+        int at = 0;
+        for (int i = 0; i < s.shipCount && at < count; i++) {
+            if (s.owner[i] != 1 || s.isFighter(i)) continue;
+            x[at] = s.x[i];
+            y[at] = s.y[i];
+            weapons[at] = metadataCache.get(s.ships[i], s.time);
+            at++;
+        }
+
+        threatMap.submit(new ThreatMap.Input(-mapWidth / 2f, -mapHeight / 2f, mapWidth, mapHeight,
+                                             count, x, y, weapons));
+    }
+
+    private static final EnumSet<CombatEngineLayers> ACTIVE_LAYERS =
+        EnumSet.of(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER);
+
     @Override
     public EnumSet<CombatEngineLayers> getActiveLayers() {
-        return EnumSet.of(CombatEngineLayers.ABOVE_SHIPS_AND_MISSILES_LAYER);
+        return ACTIVE_LAYERS;
     }
 
     @Override
     public float getRenderRadius() {
-        return Float.MAX_VALUE;
+        return renderRadius;
     }
 
     @Override
     public void render(CombatEngineLayers layer, ViewportAPI viewport) {
         // Don't render if not in tactical mode and fully faded out
-        if (!tacticalModeActive && overlayAlpha < 0.001f) return;
+        boolean profiling = TacticalProfiler.isEnabled();
+        if (!snapshot.tacticalModeActive && overlayAlpha < 0.001f && !profiling) return;
 
-        CombatEngineAPI engine = Global.getCombatEngine();
+        CombatEngineAPI engine = engineSource.get();
         if (engine == null) return;
 
+        long renderStart = System.nanoTime();
+        long profileStart = TacticalProfiler.start();
+        long allocationStart = TacticalProfiler.allocatedBytes();
+
+        if (snapshot.preset != preset) {
+            applyPreset(snapshot.preset);
+        }
+        viewMult = viewport.getViewMult();
+        if (rings != sink.supportsRings()) {
+            rings = !rings;
+            if (governor.setRingShader(rings)) applyDetail();
+            layers.invalidateAll();
+        }
+        float margin = CULL_MARGIN_PIXELS * viewMult;
+        viewMinX = viewport.getLLX() - margin;
+        viewMinY = viewport.getLLY() - margin;
+        viewMaxX = viewport.getLLX() + viewport.getVisibleWidth() + margin;
+        viewMaxY = viewport.getLLY() + viewport.getVisibleHeight() + margin;
+
         // Set up OpenGL
-        GL11.glPushMatrix();
-        GL11.glDisable(GL11.GL_TEXTURE_2D);
-        GL11.glEnable(GL11.GL_BLEND);
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        sink.beginOverlay();
 
         // Draw corner brackets to indicate tactical mode
-        if (overlayAlpha > 0.001f) {
+        if (overlayAlpha > 0.001f && preset.scanlines) {
+            long scanlineStart = TacticalProfiler.start();
             drawCornerBrackets(viewport);
+            TacticalProfiler.stop(TacticalProfiler.DRAW_SCANLINES, scanlineStart);
         }
 
         // Only draw tactical elements when overlay is visible enough
-        if (overlayAlpha > 0.1f) {
-            float elementAlpha = Math.min(1f, overlayAlpha / OVERLAY_TARGET_ALPHA);
+        layersShown = overlayAlpha > 0.1f;
+        if (layersShown) {
+            float elementAlpha = Math.min(1f, overlayAlpha / overlayTargetAlpha);
+            if (snapshot.threatMapVisible && mapWidth > 0f) {
+                // Under everything else; the texture covers the whole map
+                sink.drawThreatMap(threatMap, -mapWidth / 2f, -mapHeight / 2f, mapWidth, mapHeight,
+                                   elementAlpha * THREAT_MAP_ALPHA);
+            }
             drawTacticalElements(engine, elementAlpha);
+        } else {
+            layers.invalidateAll();
+        }
+
+        if (layersShown && snapshot.displayMessage != null && GlyphAtlas.isAvailable()) {
+            drawMessage(viewport, snapshot.displayMessage, Math.min(1f, overlayAlpha / overlayTargetAlpha));
         }
 
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
-        GL11.glPopMatrix();
+        if (profiling) {
+            drawProfilerHud(viewport);
+        }
+
+        long flushStart = TacticalProfiler.start();
+        sink.beginBatch();
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            layerBatches[i].setFlowOffset(dashFlow);
+        }
+        frameBatch.setFlowOffset(dashFlow);
+        for (int pass = 0; pass < TacticalRenderBatch.DRAW_PASSES; pass++) {
+            if (layersShown) {
+                for (int i = 0; i < LAYER_COUNT; i++) {
+                    layerBatches[i].drawPass(sink, pass);
+                }
+            }
+            frameBatch.drawPass(sink, pass);
+        }
+        sink.endBatch();
+        frameBatch.clear();
+        TacticalProfiler.stop(TacticalProfiler.FLUSH, flushStart);
+
+        sink.endOverlay();
+
+        TacticalProfiler.stop(TacticalProfiler.RENDER, profileStart);
+        TacticalProfiler.recordRenderAllocation(allocationStart);
+
+        // Only frames with the tactical elements up count against the budget
+        if (!layersShown) {
+            governor.resetWindow();
+        } else if (governor.record(advanceNanos + System.nanoTime() - renderStart)) {
+            applyDetail();
+        }
+        advanceNanos = 0L;
     }
 
-    private void drawCornerBrackets(ViewportAPI viewport) {
-        float llx = viewport.getLLX();
-        float lly = viewport.getLLY();
-        float w = viewport.getVisibleWidth();
-        float h = viewport.getVisibleHeight();
+    /** Switches layers and detail levels; every retained layer starts over. */
+    private void applyPreset(OverlayPreset next) {
+        preset = next;
+        applyDetail();
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            layerBatches[i].clear();
+        }
+    }
 
-        // Subtle scanline effect - horizontal lines across screen
-        float lineSpacing = 4f; // pixels between lines
-        float alpha = overlayAlpha * 0.08f; // Very subtle - 8% opacity max
+    /** Detail for the preset at the governor's current level. */
+    private void applyDetail() {
+        OverlayPreset p = preset;
+        FrameBudgetGovernor g = governor;
+        circleErrorPixels = g.getCircleErrorPixels(p);
+        velocityArrows = g.showsVelocityArrows(p);
+        selectedRangesOnly = g.rangeCirclesForSelectedOnly();
+        layers.setRate(LAYER_STATUS, p.statusRate);
+        layers.setRate(LAYER_ORDERS, g.getOrdersRate(p));
+        layers.setRate(LAYER_OBJECTIVES, p.objectivesRate);
+        layers.invalidateAll();
+    }
 
-        GL11.glColor4f(BRACKET_COLOR.getRed() / 255f, BRACKET_COLOR.getGreen() / 255f,
-                       BRACKET_COLOR.getBlue() / 255f, alpha);
-        GL11.glLineWidth(1f);
+    /**
+     * Bars for the last profiler window, one row per phase in
+     * {@link TacticalProfiler} order: p99 behind p95 behind p50, with a tick
+     * at every millisecond.
+     */
+    private void drawProfilerHud(ViewportAPI viewport) {
+        float px = viewMult;
+        float left = viewport.getLLX() + HUD_MARGIN_PIXELS * px;
+        float top = viewport.getLLY() + viewport.getVisibleHeight() - HUD_MARGIN_PIXELS * px;
+        float barHeight = HUD_BAR_PIXELS * px;
+
+        for (int phase = 0; phase < TacticalProfiler.PHASE_COUNT; phase++) {
+            TacticalProfiler.Histogram h = TacticalProfiler.getWindow(phase);
+            float y = top - phase * HUD_ROW_PIXELS * px;
+
+            drawHudBar(left, y, h.percentile(0.99), barHeight, TacticalColors.withAlpha(HUD_P99_COLOR, 200));
+            drawHudBar(left, y, h.percentile(0.95), barHeight, TacticalColors.withAlpha(HUD_P95_COLOR, 220));
+            drawHudBar(left, y, h.percentile(0.50), barHeight, TacticalColors.withAlpha(HUD_P50_COLOR, 255));
+        }
 
-        GL11.glBegin(GL11.GL_LINES);
-        for (float y = lly; y < lly + h; y += lineSpacing) {
-            GL11.glVertex2f(llx, y);
-            GL11.glVertex2f(llx + w, y);
+        float bottom = top - TacticalProfiler.PHASE_COUNT * HUD_ROW_PIXELS * px;
+        int scaleColor = TacticalColors.withAlpha(HUD_SCALE_COLOR, 160);
+        for (float tick = 0f; tick <= HUD_MAX_BAR_PIXELS; tick += 1000f * HUD_PIXELS_PER_MICRO) {
+            float x = left + tick * px;
+            drawLine(x, bottom, x, top + barHeight, scaleColor);
         }
-        GL11.glEnd();
+    }
+
+    private void drawHudBar(float left, float y, long nanos, float height, int color) {
+        if (nanos <= 0L) return;
+        float lengthPixels = Math.min(HUD_MAX_BAR_PIXELS, nanos / 1000f * HUD_PIXELS_PER_MICRO);
+        float right = left + lengthPixels * viewMult;
+        batch.quad(left, y, right, y, right, y + height, left, y + height, color);
+    }
+
+    private void drawCornerBrackets(ViewportAPI viewport) {
+        // Subtle scanline effect - horizontal lines across screen, one textured quad
+        float alpha = overlayAlpha * 0.08f; // Very subtle - 8% opacity max
+        sink.drawScanlines(viewport, BRACKET_COLOR, alpha);
     }
 
     private void drawTacticalElements(CombatEngineAPI engine, float alpha) {
-        List<ShipAPI> ships = engine.getShips();
+        BattleSnapshot s = snapshot;
+        long phaseStart = TacticalProfiler.start();
+
+        if (viewMult > CLUSTER_ENTER_ZOOM) {
+            clustering = true;
+        } else if (viewMult < CLUSTER_EXIT_ZOOM && clustering) {
+            clustering = false;
+            clusterer.clear();
+        }
+        if (clustering) {
+            clusterer.update(s, viewMult);
+        }
+        wingGrouper.update(s);
+
+        // Slow layers that depend on more than time and the view
+        if (layerOrdersVersion != assignments.getVersion()) {
+            layerOrdersVersion = assignments.getVersion();
+            layers.invalidate(LAYER_ORDERS);
+        }
+        if (layerClustering != clustering) {
+            layerClustering = clustering;
+            layers.invalidate(LAYER_STATUS);
+        }
+        if (selectedRangesOnly && layerSelectionVersion != s.selection.getVersion()) {
+            layerSelectionVersion = s.selection.getVersion();
+            layers.invalidate(LAYER_STATUS);
+        }
 
-        for (ShipAPI ship : ships) {
-            if (ship.isHulk() || ship.isShuttlePod()) continue;
+        // Indexed loops throughout: no iterator garbage per frame
+        boolean fighters = preset.fighters;
+        boolean labels = preset.labels && viewMult <= LABEL_MAX_ZOOM && GlyphAtlas.isAvailable();
+        for (int i = 0; i < s.shipCount; i++) {
+            // Fighters in a wing, and ships sharing a cluster, are drawn by their group's glyph instead
+            if (wingGrouper.getGroup(i) >= 0 || (!fighters && s.isFighter(i))) continue;
+            if (clustering) {
+                int cluster = clusterer.getCluster(i);
+                if (cluster >= 0 && clusterer.getMemberCount(cluster) > 1) continue;
+            }
 
-            float x = ship.getLocation().x;
-            float y = ship.getLocation().y;
-            float radius = ship.getCollisionRadius();
+            float x = s.x[i];
+            float y = s.y[i];
+            float radius = s.radius[i];
+            int owner = s.owner[i];
+            ShipAPI.HullSize hullSize = s.getHullSize(i);
 
             // Choose color based on owner (using cached colors)
-            Color baseColor;
-            if (ship.getOwner() == 0) {
-                baseColor = PLAYER_FLEET_COLOR;
-            } else if (ship.getOwner() == 1) {
-                baseColor = ENEMY_COLOR;
-            } else {
-                baseColor = NEUTRAL_COLOR;
-            }
+            int baseColor = ownerColor(owner);
+
+            // Weapon ranges and flux arcs are in the status layer
+
+            // Everything else stays within a couple of radii of the ship, plus the velocity arrow
+            float speed = s.speed(i);
+            float glyphReach = radius * 2f + speed * 0.5f + 15f;
+            if (!isCircleVisible(x, y, glyphReach)) continue;
 
             // Apply alpha
-            Color color = new Color(baseColor.getRed(), baseColor.getGreen(),
-                                    baseColor.getBlue(), (int)(180 * alpha));
+            int color = TacticalColors.withAlpha(baseColor, (int)(180 * alpha));
 
             // Draw circle around ship
             drawCircle(x, y, radius * 1.5f, color);
 
             // Draw facing indicator
-            float facing = ship.getFacing();
+            float facing = s.facing[i];
             float lineLength = radius * 2f;
-            float endX = x + (float) Math.cos(Math.toRadians(facing)) * lineLength;
-            float endY = y + (float) Math.sin(Math.toRadians(facing)) * lineLength;
+            int facingIndex = TacticalGeometry.indexForDegrees(facing);
+            float endX = x + TacticalGeometry.cos(facingIndex) * lineLength;
+            float endY = y + TacticalGeometry.sin(facingIndex) * lineLength;
             drawLine(x, y, endX, endY, color);
 
             // Draw velocity vector (where ship is heading)
-            if (ship.getVelocity().length() > 10f) {
+            if (speed > 10f && velocityArrows) {
                 float velScale = 0.5f; // Scale down velocity for display
-                float velEndX = x + ship.getVelocity().x * velScale;
-                float velEndY = y + ship.getVelocity().y * velScale;
-                Color velColor = new Color(baseColor.getRed(), baseColor.getGreen(),
-                                           baseColor.getBlue(), (int)(100 * alpha));
+                float velEndX = x + s.vx[i] * velScale;
+                float velEndY = y + s.vy[i] * velScale;
+                int velColor = TacticalColors.withAlpha(baseColor, (int)(100 * alpha));
                 drawLine(x, y, velEndX, velEndY, velColor);
                 // Draw arrowhead
-                drawArrowHead(velEndX, velEndY, ship.getVelocity(), velColor);
+                drawArrowHead(velEndX, velEndY, s.vx[i], s.vy[i], velColor);
             }
 
-            // Draw weapon range for larger ships
-            if (ship.getHullSize() == ShipAPI.HullSize.CAPITAL_SHIP ||
-                ship.getHullSize() == ShipAPI.HullSize.CRUISER) {
-                float maxRange = getMaxWeaponRange(ship);
-                if (maxRange > 0) {
-                    Color rangeColor = new Color(baseColor.getRed(), baseColor.getGreen(),
-                                                  baseColor.getBlue(), (int)(40 * alpha));
-                    drawCircle(x, y, maxRange, rangeColor);
-                }
-            }
-
-            // Draw flux indicator (arc around ship) - only for enemies
-            float fluxLevel = ship.getFluxLevel();
-            if (ship.getOwner() == 1 && fluxLevel > 0.01f) {
-                Color baseFluxColor;
-                int fluxAlpha;
-                if (fluxLevel > 0.8f) {
-                    baseFluxColor = FLUX_CRITICAL;
-                    fluxAlpha = (int)(200 * alpha);
-                } else if (fluxLevel > 0.5f) {
-                    baseFluxColor = FLUX_WARNING;
-                    fluxAlpha = (int)(150 * alpha);
-                } else {
-                    baseFluxColor = FLUX_NORMAL;
-                    fluxAlpha = (int)(100 * alpha);
+            // Draw hull size symbol for non-fighters: small dot for frigate,
+            // larger for destroyer, etc., with the ship's label under it
+            if (!s.isFighter(i)) {
+                float indicatorY = y - radius * 1.7f;
+                drawShipSizeIndicator(x, indicatorY, hullSize, color, alpha);
+                if (labels) {
+                    float top = indicatorY - ShipMetadataCache.glyphSizeFor(hullSize) - LABEL_GAP_PIXELS * viewMult;
+                    drawShipLabel(i, x, top, hullSize, color);
                 }
-                Color fluxColor = new Color(baseFluxColor.getRed(), baseFluxColor.getGreen(),
-                                            baseFluxColor.getBlue(), fluxAlpha);
-                drawArc(x, y, radius * 1.8f, 90f, 90f + fluxLevel * 360f, fluxColor);
             }
+        }
 
-            // Draw ship class label for non-fighters
-            if (!ship.isFighter()) {
-                String label = getHullSizeLabel(ship.getHullSize());
-                // Note: Text rendering would require LWJGL font rendering which is complex
-                // For now we use symbols: small dot for frigate, larger for destroyer, etc.
-                drawShipSizeIndicator(x, y - radius * 1.7f, ship.getHullSize(), color, alpha);
-            }
+        if (fighters) {
+            drawFighterWings(alpha);
+        }
+        if (clustering) {
+            drawClusters(alpha);
         }
 
-        // Draw ALL friendly ships' current orders (like Tab view)
-        drawAllShipOrders(engine, alpha);
+        if (beginLayer(LAYER_STATUS, alpha)) {
+            drawShipStatus(alpha);
+            endLayer(LAYER_STATUS, alpha);
+        }
 
-        // Draw objectives
-        for (BattleObjectiveAPI objective : engine.getObjectives()) {
-            float x = objective.getLocation().x;
-            float y = objective.getLocation().y;
+        TacticalProfiler.stop(TacticalProfiler.DRAW_SHIPS, phaseStart);
 
-            // Color based on who controls it
-            Color objColor;
-            int owner = objective.getOwner();
-            if (owner == 0) {
-                objColor = new Color(100, 200, 255, (int)(150 * alpha));
-            } else if (owner == 1) {
-                objColor = new Color(255, 100, 100, (int)(150 * alpha));
-            } else {
-                objColor = new Color(255, 255, 100, (int)(150 * alpha)); // Neutral/contested
-            }
+        // Draw ALL friendly ships' current orders (like Tab view)
+        phaseStart = TacticalProfiler.start();
+        if (preset.orderLines && beginLayer(LAYER_ORDERS, alpha)) {
+            drawAllShipOrders(alpha);
+            endLayer(LAYER_ORDERS, alpha);
+        }
+        TacticalProfiler.stop(TacticalProfiler.DRAW_ORDERS, phaseStart);
 
-            drawCircle(x, y, 80f, objColor);
-            drawCircle(x, y, 120f, new Color(objColor.getRed(), objColor.getGreen(),
-                                              objColor.getBlue(), (int)(80 * alpha)));
+        phaseStart = TacticalProfiler.start();
+        if (preset.objectives && beginLayer(LAYER_OBJECTIVES, alpha)) {
+            drawObjectives(engine, alpha);
+            endLayer(LAYER_OBJECTIVES, alpha);
         }
+        TacticalProfiler.stop(TacticalProfiler.DRAW_OBJECTIVES, phaseStart);
 
         // Draw selection indicators for all selected ships
-        for (ShipAPI selectedShip : selectedShips) {
-            if (selectedShip != null && selectedShip.isAlive()) {
-                drawSelectionIndicator(selectedShip, alpha);
+        phaseStart = TacticalProfiler.start();
+        ShipSelection selection = s.selection;
+        Vector2f commandTarget = s.commandTarget;
+        ShipAPI commandAttackTarget = s.commandAttackTarget;
+        boolean showCommand = s.showCommand;
+        boolean detailedSelection = selection.size() <= DETAILED_SELECTION_LIMIT;
+        for (int i = 0; i < s.shipCount; i++) {
+            if (s.isSelected(i)) {
+                float shipX = s.x[i];
+                float shipY = s.y[i];
+                drawSelectionIndicator(shipX, shipY, s.radius[i], alpha, detailedSelection);
 
                 // Draw command visualization from each selected ship
                 if (showCommand) {
-                    float shipX = selectedShip.getLocation().x;
-                    float shipY = selectedShip.getLocation().y;
 
-                    if (commandTarget != null) {
+                    if (commandTarget != null && !s.formationCommand) {
                         // Draw line from ship to waypoint
-                        Color lineColor = new Color(WAYPOINT_COLOR.getRed(), WAYPOINT_COLOR.getGreen(),
-                                                    WAYPOINT_COLOR.getBlue(), (int)(150 * alpha));
+                        int lineColor = TacticalColors.withAlpha(WAYPOINT_COLOR, (int)(150 * alpha));
                         drawDashedLine(shipX, shipY, commandTarget.x, commandTarget.y, lineColor);
                     }
 
@@ -273,8 +623,7 @@ public class TacticalOverhaulCombatPlugin extends BaseCombatLayeredRenderingPlug
                         // Draw attack line from ship to target
                         float targetX = commandAttackTarget.getLocation().x;
                         float targetY = commandAttackTarget.getLocation().y;
-                        Color lineColor = new Color(ATTACK_LINE_COLOR.getRed(), ATTACK_LINE_COLOR.getGreen(),
-                                                    ATTACK_LINE_COLOR.getBlue(), (int)(200 * alpha));
+                        int lineColor = TacticalColors.withAlpha(ATTACK_LINE_COLOR, (int)(200 * alpha));
                         drawDashedLine(shipX, shipY, targetX, targetY, lineColor);
                     }
                 }
@@ -282,195 +631,402 @@ public class TacticalOverhaulCombatPlugin extends BaseCombatLayeredRenderingPlug
         }
 
         // Draw command target markers once (not per ship)
-        if (showCommand && !selectedShips.isEmpty()) {
-            if (commandTarget != null) {
+        if (showCommand && !selection.isEmpty()) {
+            if (commandTarget != null && isCircleVisible(commandTarget.x, commandTarget.y, 50f)) {
                 drawWaypoint(commandTarget.x, commandTarget.y, alpha);
             }
             if (commandAttackTarget != null && commandAttackTarget.isAlive()) {
                 float targetX = commandAttackTarget.getLocation().x;
                 float targetY = commandAttackTarget.getLocation().y;
-                drawAttackMarker(targetX, targetY, alpha);
+                if (isCircleVisible(targetX, targetY, 40f)) {
+                    drawAttackMarker(targetX, targetY, alpha);
+                }
             }
         }
+        // Formation orders draw each ship's line to its own slot
+        FormationPlanner formation = s.formation;
+        if (formation != null && (s.formationPreview || (showCommand && s.formationCommand))) {
+            drawFormationSlots(formation, s.formationPreview, alpha);
+        }
+
+        if (s.boxSelecting) {
+            drawSelectionBox(s.boxStartX, s.boxStartY, s.boxEndX, s.boxEndY, alpha);
+        }
+        TacticalProfiler.stop(TacticalProfiler.DRAW_SELECTION, phaseStart);
     }
 
-    private void drawAllShipOrders(CombatEngineAPI engine, float alpha) {
-        CombatFleetManagerAPI fleetManager = engine.getFleetManager(0); // Player fleet
-        if (fleetManager == null) return;
+    /**
+     * One glyph per cluster of two or more ships: a ring around the members,
+     * an inner ring sized by total hull weight, the average flux arc for
+     * enemies and the ship count: as a number when the glyph atlas is up,
+     * otherwise a pip per ship up to {@link #CLUSTER_MAX_PIPS}.
+     */
+    private void drawClusters(float alpha) {
+        ShipClusterer c = clusterer;
+        float px = viewMult;
+        for (int id = 0; id < c.getIdLimit(); id++) {
+            if (!c.isLive(id)) continue;
+            int count = c.getMemberCount(id);
+            if (count < 2) continue;
+
+            float x = c.getCenterX(id);
+            float y = c.getCenterY(id);
+            float extent = c.getExtent(id) + 6f * px;
+            if (!isCircleVisible(x, y, extent + 10f * px)) continue;
+
+            int owner = c.getOwner(id);
+            int baseColor = ownerColor(owner);
+            int color = TacticalColors.withAlpha(baseColor, (int)(180 * alpha));
+
+            drawCircle(x, y, extent, color);
+
+            float weightRadius = (float) Math.sqrt(c.getHullWeight(id)) * CLUSTER_WEIGHT_PIXELS * px;
+            drawCircle(x, y, weightRadius, 2f, color);
+
+            float fluxLevel = c.getAverageFlux(id);
+            if (owner == 1 && fluxLevel > 0.01f) {
+                int fluxColor;
+                if (fluxLevel > 0.8f) {
+                    fluxColor = TacticalColors.withAlpha(FLUX_CRITICAL, (int)(200 * alpha));
+                } else if (fluxLevel > 0.5f) {
+                    fluxColor = TacticalColors.withAlpha(FLUX_WARNING, (int)(150 * alpha));
+                } else {
+                    fluxColor = TacticalColors.withAlpha(FLUX_NORMAL, (int)(100 * alpha));
+                }
+                drawArc(x, y, extent + 4f * px, 90f, 90f + fluxLevel * 360f, fluxColor);
+            }
 
-        CombatTaskManagerAPI taskManager = fleetManager.getTaskManager(false);
-        if (taskManager == null) return;
+            // Ship count under the ring
+            if (GlyphAtlas.isAvailable()) {
+                labelLength = 0;
+                appendLabel(count);
+                drawCenteredLabel(x, y - extent - 4f * px, px, color);
+                continue;
+            }
+            int pips = Math.min(count, CLUSTER_MAX_PIPS);
+            float spacing = CLUSTER_PIP_PIXELS * 2f * px;
+            float pipX = x - (pips - 1) * spacing * 0.5f;
+            float pipY = y - extent - 8f * px;
+            for (int p = 0; p < pips; p++) {
+                batch.point(pipX + p * spacing, pipY, CLUSTER_PIP_PIXELS, color);
+            }
+        }
+    }
 
-        // Iterate through all friendly non-fighter ships
-        for (ShipAPI ship : engine.getShips()) {
-            if (ship.getOwner() != 0) continue; // Only friendly ships
-            if (ship.isHulk() || ship.isFighter() || ship.isShuttlePod()) continue;
+    private void drawFighterWings(float alpha) {
+        FighterWingGrouper w = wingGrouper;
+        float px = viewMult;
+        for (int g = 0; g < w.getIdLimit(); g++) {
+            if (!w.isLive(g)) continue;
+
+            float x = w.getCenterX(g);
+            float y = w.getCenterY(g);
+            int owner = w.getOwner(g);
+            int baseColor = ownerColor(owner);
+
+            // Line back to the carrier, culled on its own like range circles
+            if (w.hasCarrier(g)) {
+                int carrierColor = TacticalColors.withAlpha(baseColor, (int)(50 * alpha));
+                drawClippedLine(x, y, w.getCarrierX(g), w.getCarrierY(g), carrierColor);
+            }
 
-            DeployedFleetMemberAPI deployed = fleetManager.getDeployedFleetMember(ship);
-            if (deployed == null) continue;
+            // Principal axes of the spread, at least as large as one fighter
+            float varX = w.getVarianceX(g);
+            float varY = w.getVarianceY(g);
+            float cov = w.getCovariance(g);
+            float mid = (varX + varY) * 0.5f;
+            float diff = (float) Math.sqrt((varX - varY) * (varX - varY) * 0.25f + cov * cov);
+            float minAxis = w.getMaxRadius(g) * 1.5f;
+            float major = Math.max(minAxis, 2f * (float) Math.sqrt(mid + diff));
+            float minor = Math.max(minAxis, 2f * (float) Math.sqrt(Math.max(0f, mid - diff)));
+            if (!isCircleVisible(x, y, major + 12f * px)) continue;
+
+            int color = TacticalColors.withAlpha(baseColor, (int)(180 * alpha));
+            int axisIndex = TacticalGeometry.indexForRadians(0.5f * (float) Math.atan2(2f * cov, varX - varY));
+            drawEllipse(x, y, major, minor, axisIndex, TacticalColors.withAlpha(baseColor, (int)(90 * alpha)));
+
+            // Chevron marker at the centroid
+            float m = WING_MARKER_PIXELS * px;
+            batch.line(x - m, y - m * 0.5f, x, y + m * 0.5f, 1f, color);
+            batch.line(x, y + m * 0.5f, x + m, y - m * 0.5f, 1f, color);
+
+            int pips = Math.min(w.getMemberCount(g), WING_MAX_PIPS);
+            float spacing = WING_PIP_PIXELS * 2f * px;
+            float pipX = x - (pips - 1) * spacing * 0.5f;
+            float pipY = y - m - 4f * px;
+            for (int p = 0; p < pips; p++) {
+                batch.point(pipX + p * spacing, pipY, WING_PIP_PIXELS, color);
+            }
+        }
+    }
 
-            // Get current assignment for this ship
-            CombatFleetManagerAPI.AssignmentInfo assignment = taskManager.getAssignmentFor(ship);
-            if (assignment == null) continue;
+    /**
+     * Starts rebuilding a slow layer if it is due: clears its batch, points
+     * the draw helpers at it and widens the cull rectangle. Otherwise moves
+     * the layer's kept geometry forward to this frame and returns false.
+     */
+    private boolean beginLayer(int layer, float alpha) {
+        float time = snapshot.time;
+        if (!layers.isDue(layer, time, alpha, viewMult, viewMinX, viewMinY, viewMaxX, viewMaxY)) {
+            layerBatches[layer].extrapolate(layers.advanceShown(layer, time));
+            return false;
+        }
 
-            AssignmentTargetAPI target = assignment.getTarget();
-            if (target == null) continue;
+        layerPadX = (viewMaxX - viewMinX) * LAYER_CULL_PADDING;
+        layerPadY = (viewMaxY - viewMinY) * LAYER_CULL_PADDING;
+        viewMinX -= layerPadX;
+        viewMinY -= layerPadY;
+        viewMaxX += layerPadX;
+        viewMaxY += layerPadY;
 
-            float shipX = ship.getLocation().x;
-            float shipY = ship.getLocation().y;
+        batch = layerBatches[layer];
+        batch.clear();
+        return true;
+    }
 
-            CombatAssignmentType type = assignment.getType();
+    private void endLayer(int layer, float alpha) {
+        layers.markBuilt(layer, snapshot.time, alpha, viewMult, viewMinX, viewMinY, viewMaxX, viewMaxY);
+
+        viewMinX += layerPadX;
+        viewMinY += layerPadY;
+        viewMaxX -= layerPadX;
+        viewMaxY -= layerPadY;
+
+        batch.setVelocity(0f, 0f);
+        batch = frameBatch;
+    }
+
+    /**
+     * Weapon range circles and flux arcs, for the ships the preset (and,
+     * over budget, the governor) allows. Drawn into the status layer, each
+     * ship's geometry moving with the ship until the next rebuild.
+     */
+    private void drawShipStatus(float alpha) {
+        BattleSnapshot s = snapshot;
+        OverlayPreset p = preset;
+        for (int i = 0; i < s.shipCount; i++) {
+            if (wingGrouper.getGroup(i) >= 0 || (!p.fighters && s.isFighter(i))) continue;
+            if (clustering) {
+                int cluster = clusterer.getCluster(i);
+                if (cluster >= 0 && clusterer.getMemberCount(cluster) > 1) continue;
+            }
+
+            float x = s.x[i];
+            float y = s.y[i];
+            float radius = s.radius[i];
+            int owner = s.owner[i];
+            batch.setVelocity(s.vx[i], s.vy[i]);
+
+            // Draw weapon range for the preset's hull sizes (culled on its own -
+            // it can be on screen while the ship itself is not)
+            if (p.showsRangeCircle(s.hullSize[i]) && (!selectedRangesOnly || s.isSelected(i))) {
+                float maxRange = metadataCache.get(s.ships[i], s.time).maxRange;
+                if (maxRange > 0 && isRingVisible(x, y, maxRange)) {
+                    int rangeColor = TacticalColors.withAlpha(ownerColor(owner), (int)(40 * alpha));
+                    drawCircle(x, y, maxRange, rangeColor);
+                }
+            }
+
+            // Draw flux indicator (arc around ship) - enemies only unless the preset says all
+            float fluxLevel = s.flux[i];
+            if (p.fluxArcs && (owner == 1 || p.fluxArcsForAll) && fluxLevel > 0.01f && isCircleVisible(x, y, radius * 1.8f)) {
+                int baseFluxColor;
+                int fluxAlpha;
+                if (fluxLevel > 0.8f) {
+                    baseFluxColor = FLUX_CRITICAL;
+                    fluxAlpha = (int)(200 * alpha);
+                } else if (fluxLevel > 0.5f) {
+                    baseFluxColor = FLUX_WARNING;
+                    fluxAlpha = (int)(150 * alpha);
+                } else {
+                    baseFluxColor = FLUX_NORMAL;
+                    fluxAlpha = (int)(100 * alpha);
+                }
+                int fluxColor = TacticalColors.withAlpha(baseFluxColor, fluxAlpha);
+                drawArc(x, y, radius * 1.8f, 90f, 90f + fluxLevel * 360f, fluxColor);
+            }
+        }
+    }
+
+    private void drawObjectives(CombatEngineAPI engine, float alpha) {
+        List<BattleObjectiveAPI> objectives = engine.getObjectives();
+        for (int i = 0; i < objectives.size(); i++) {
+            BattleObjectiveAPI objective = objectives.get(i);
+            float x = objective.getLocation().x;
+            float y = objective.getLocation().y;
+            if (!isCircleVisible(x, y, 120f)) continue;
+
+            // Color based on who controls it
+            int objColor;
+            int owner = objective.getOwner();
+            if (owner == 0) {
+                objColor = TacticalColors.withAlpha(PLAYER_FLEET_COLOR, (int)(150 * alpha));
+            } else if (owner == 1) {
+                objColor = TacticalColors.withAlpha(ENEMY_COLOR, (int)(150 * alpha));
+            } else {
+                objColor = TacticalColors.withAlpha(OBJECTIVE_CONTESTED_COLOR, (int)(150 * alpha)); // Neutral/contested
+            }
+
+            drawCircle(x, y, 80f, objColor);
+            drawCircle(x, y, 120f, TacticalColors.withAlpha(objColor, (int)(80 * alpha)));
+        }
+    }
+
+    private static int ownerColor(int owner) {
+        if (owner == 0) return PLAYER_FLEET_COLOR;
+        if (owner == 1) return ENEMY_COLOR;
+        return NEUTRAL_COLOR;
+    }
+
+    private void drawAllShipOrders(float alpha) {
+        AssignmentTracker orders = assignments;
+        if (orderStyleVersion != orders.getVersion()) {
+            rebuildOrderStyles();
+        }
+
+        // Per frame only the endpoints move; type, color and marker come from the cached styles
+        for (int i = 0; i < orders.size(); i++) {
+            ShipAPI ship = orders.getShip(i);
+            if (!ship.isAlive() || ship.isHulk()) continue;
+
+            Vector2f targetLoc = orders.getTarget(i).getLocation();
+            if (targetLoc == null) continue;
+
+            Vector2f shipLoc = ship.getLocation();
+            CombatAssignmentType type = orders.getType(i);
+            int lineColor = TacticalColors.withAlpha(orderLineColors[i], (int)(120 * alpha));
+
+            // Draw order line from ship to target; between layer rebuilds the
+            // ship end follows the ship, the target end and the marker stay put
+            Vector2f shipVel = ship.getVelocity();
+            drawOrderLine(shipLoc.x, shipLoc.y, shipVel.x, shipVel.y, targetLoc.x, targetLoc.y, lineColor, type);
+
+            // Draw target marker (smaller than command markers)
+            if (isCircleVisible(targetLoc.x, targetLoc.y, 15f)) {
+                drawOrderMarker(targetLoc.x, targetLoc.y, type, alpha * 0.7f);
+            }
+        }
+    }
+
+    private void rebuildOrderStyles() {
+        AssignmentTracker orders = assignments;
+        if (orderLineColors.length < orders.size()) {
+            orderLineColors = new int[Math.max(orders.size(), orderLineColors.length * 2)];
+        }
+
+        for (int i = 0; i < orders.size(); i++) {
+            CombatAssignmentType type = orders.getType(i);
 
             // Determine color based on assignment type
-            Color lineColor;
             if (type == CombatAssignmentType.INTERCEPT ||
                 type == CombatAssignmentType.STRIKE ||
                 type == CombatAssignmentType.HARASS) {
                 // Attack orders - red
-                lineColor = new Color(ATTACK_LINE_COLOR.getRed(), ATTACK_LINE_COLOR.getGreen(),
-                                      ATTACK_LINE_COLOR.getBlue(), (int)(120 * alpha));
+                orderLineColors[i] = ATTACK_LINE_COLOR;
             } else if (type == CombatAssignmentType.RETREAT) {
                 // Retreat - yellow
-                lineColor = new Color(255, 200, 50, (int)(120 * alpha));
+                orderLineColors[i] = RETREAT_COLOR;
             } else {
                 // Move/defend orders - green
-                lineColor = new Color(WAYPOINT_COLOR.getRed(), WAYPOINT_COLOR.getGreen(),
-                                      WAYPOINT_COLOR.getBlue(), (int)(120 * alpha));
-            }
-
-            Vector2f targetLoc = target.getLocation();
-            if (targetLoc != null) {
-                // Draw order line from ship to target
-                drawOrderLine(shipX, shipY, targetLoc.x, targetLoc.y, lineColor, type);
-
-                // Draw target marker (smaller than command markers)
-                drawOrderMarker(targetLoc.x, targetLoc.y, type, alpha * 0.7f);
+                orderLineColors[i] = WAYPOINT_COLOR;
             }
         }
+
+        orderStyleVersion = orders.getVersion();
     }
 
-    private void drawOrderLine(float x1, float y1, float x2, float y2, Color color, CombatAssignmentType type) {
+    /** @param vx1 velocity of the ship end; the target end doesn't move */
+    private void drawOrderLine(float x1, float y1, float vx1, float vy1, float x2, float y2,
+                               int color, CombatAssignmentType type) {
         float dx = x2 - x1;
         float dy = y2 - y1;
         float length = (float) Math.sqrt(dx * dx + dy * dy);
         if (length < 50f) return; // Don't draw very short lines
 
-        // Draw a thinner, more subtle dashed line for existing orders
-        float dashLength = 20f;
-        float gapLength = 15f;
-        float segmentLength = dashLength + gapLength;
-        int segments = (int) (length / segmentLength);
+        // Draw a thinner, more subtle dashed line for existing orders. A point
+        // a fraction t along the line moves with (1 - t) of the ship's velocity
+        if (TacticalGeometry.clipSegment(x1, y1, x2, y2, viewMinX, viewMinY, viewMaxX, viewMaxY, clipT)) {
+            float t0 = clipT[0];
+            float t1 = clipT[1];
+            batch.dashedLine(x1 + dx * t0, y1 + dy * t0, t0 * length / ORDER_DASH_PERIOD,
+                             vx1 * (1f - t0), vy1 * (1f - t0),
+                             x1 + dx * t1, y1 + dy * t1, t1 * length / ORDER_DASH_PERIOD,
+                             vx1 * (1f - t1), vy1 * (1f - t1),
+                             1.5f, color, false);
+        }
 
         float nx = dx / length;
         float ny = dy / length;
 
-        GL11.glColor4f(color.getRed() / 255f, color.getGreen() / 255f,
-                       color.getBlue() / 255f, color.getAlpha() / 255f);
-        GL11.glLineWidth(1.5f);
-        GL11.glBegin(GL11.GL_LINES);
-
-        for (int i = 0; i <= segments; i++) {
-            float startDist = i * segmentLength;
-            float endDist = Math.min(startDist + dashLength, length);
-
-            float sx = x1 + nx * startDist;
-            float sy = y1 + ny * startDist;
-            float ex = x1 + nx * endDist;
-            float ey = y1 + ny * endDist;
-
-            GL11.glVertex2f(sx, sy);
-            GL11.glVertex2f(ex, ey);
-        }
-
-        GL11.glEnd();
-        GL11.glLineWidth(1f);
-
         // Draw small arrowhead at the end
-        if (length > 100f) {
+        if (length > 100f && isCircleVisible(x2, y2, 40f)) {
             float arrowDist = length - 30f;
             float arrowX = x1 + nx * arrowDist;
             float arrowY = y1 + ny * arrowDist;
-            float angle = (float) Math.atan2(dy, dx);
             float arrowSize = 10f;
-            float arrowAngle = (float) Math.toRadians(150);
 
-            float ax1 = arrowX + (float) Math.cos(angle + arrowAngle) * arrowSize;
-            float ay1 = arrowY + (float) Math.sin(angle + arrowAngle) * arrowSize;
-            float ax2 = arrowX + (float) Math.cos(angle - arrowAngle) * arrowSize;
-            float ay2 = arrowY + (float) Math.sin(angle - arrowAngle) * arrowSize;
+            // Rotate the line direction by +/-150 degrees for the barbs
+            float ax1 = arrowX + (nx * ARROW_BARB_COS - ny * ARROW_BARB_SIN) * arrowSize;
+            float ay1 = arrowY + (nx * ARROW_BARB_SIN + ny * ARROW_BARB_COS) * arrowSize;
+            float ax2 = arrowX + (nx * ARROW_BARB_COS + ny * ARROW_BARB_SIN) * arrowSize;
+            float ay2 = arrowY + (-nx * ARROW_BARB_SIN + ny * ARROW_BARB_COS) * arrowSize;
 
-            GL11.glBegin(GL11.GL_LINES);
-            GL11.glVertex2f(x2, y2);
-            GL11.glVertex2f(ax1, ay1);
-            GL11.glVertex2f(x2, y2);
-            GL11.glVertex2f(ax2, ay2);
-            GL11.glEnd();
+            batch.line(x2, y2, ax1, ay1, 1f, color);
+            batch.line(x2, y2, ax2, ay2, 1f, color);
         }
     }
 
     private void drawOrderMarker(float x, float y, CombatAssignmentType type, float alpha) {
-        Color markerColor;
+        int markerColor;
         float markerSize = 15f;
 
         if (type == CombatAssignmentType.INTERCEPT ||
             type == CombatAssignmentType.STRIKE ||
             type == CombatAssignmentType.HARASS) {
             // Attack - small X
-            markerColor = new Color(ATTACK_LINE_COLOR.getRed(), ATTACK_LINE_COLOR.getGreen(),
-                                    ATTACK_LINE_COLOR.getBlue(), (int)(180 * alpha));
-            GL11.glLineWidth(2f);
-            GL11.glColor4f(markerColor.getRed() / 255f, markerColor.getGreen() / 255f,
-                           markerColor.getBlue() / 255f, markerColor.getAlpha() / 255f);
-            GL11.glBegin(GL11.GL_LINES);
-            GL11.glVertex2f(x - markerSize, y - markerSize);
-            GL11.glVertex2f(x + markerSize, y + markerSize);
-            GL11.glVertex2f(x - markerSize, y + markerSize);
-            GL11.glVertex2f(x + markerSize, y - markerSize);
-            GL11.glEnd();
-            GL11.glLineWidth(1f);
+            markerColor = TacticalColors.withAlpha(ATTACK_LINE_COLOR, (int)(180 * alpha));
+            batch.line(x - markerSize, y - markerSize, x + markerSize, y + markerSize, 2f, markerColor);
+            batch.line(x - markerSize, y + markerSize, x + markerSize, y - markerSize, 2f, markerColor);
         } else if (type == CombatAssignmentType.RETREAT) {
             // Retreat - arrow pointing away
-            markerColor = new Color(255, 200, 50, (int)(180 * alpha));
+            markerColor = TacticalColors.withAlpha(RETREAT_COLOR, (int)(180 * alpha));
             drawCircle(x, y, markerSize, markerColor);
         } else {
             // Defend/move - small circle with dot
-            markerColor = new Color(WAYPOINT_COLOR.getRed(), WAYPOINT_COLOR.getGreen(),
-                                    WAYPOINT_COLOR.getBlue(), (int)(180 * alpha));
+            markerColor = TacticalColors.withAlpha(WAYPOINT_COLOR, (int)(180 * alpha));
             drawCircle(x, y, markerSize, markerColor);
             // Draw center dot
-            GL11.glColor4f(markerColor.getRed() / 255f, markerColor.getGreen() / 255f,
-                           markerColor.getBlue() / 255f, markerColor.getAlpha() / 255f);
-            GL11.glPointSize(4f);
-            GL11.glBegin(GL11.GL_POINTS);
-            GL11.glVertex2f(x, y);
-            GL11.glEnd();
-            GL11.glPointSize(1f);
+            batch.point(x, y, 4f, markerColor);
         }
     }
 
-    private void drawSelectionIndicator(ShipAPI ship, float alpha) {
-        float x = ship.getLocation().x;
-        float y = ship.getLocation().y;
-        float radius = ship.getCollisionRadius();
+    /**
+     * Rings and corner brackets around a selected ship. Large selections
+     * get a single ring each so selecting a whole fleet stays cheap.
+     */
+    private void drawSelectionIndicator(float x, float y, float radius, float alpha, boolean detailed) {
+        if (!isCircleVisible(x, y, radius * 2.6f)) return;
 
         // Pulsing effect
         float pulse = 0.7f + 0.3f * (float) Math.sin(selectionPulse);
         int pulseAlpha = (int) (255 * alpha * pulse);
 
         // Selection color - bright green/cyan
-        Color selectColor = new Color(0, 255, 200, pulseAlpha);
+        int selectColor = TacticalColors.withAlpha(SELECTION_COLOR, pulseAlpha);
+
+        if (!detailed) {
+            drawCircle(x, y, radius * 2.0f, 2f, selectColor);
+            return;
+        }
 
         // Draw multiple rings for emphasis
-        GL11.glLineWidth(3f);
-        drawCircle(x, y, radius * 2.0f, selectColor);
-        GL11.glLineWidth(2f);
-        drawCircle(x, y, radius * 2.3f, new Color(0, 255, 200, pulseAlpha / 2));
-        GL11.glLineWidth(1f);
+        drawCircle(x, y, radius * 2.0f, 3f, selectColor);
+        drawCircle(x, y, radius * 2.3f, 2f, TacticalColors.withAlpha(SELECTION_COLOR, pulseAlpha / 2));
 
         // Draw corner brackets for extra visibility
         float bracketSize = radius * 0.8f;
         float bracketOffset = radius * 1.8f;
-        Color bracketColor = new Color(0, 255, 200, (int)(200 * alpha));
+        int bracketColor = TacticalColors.withAlpha(SELECTION_COLOR, (int)(200 * alpha));
 
         // Top-left bracket
         drawLine(x - bracketOffset, y + bracketOffset - bracketSize, x - bracketOffset, y + bracketOffset, bracketColor);
@@ -489,75 +1045,206 @@ public class TacticalOverhaulCombatPlugin extends BaseCombatLayeredRenderingPlug
         drawLine(x + bracketOffset, y - bracketOffset, x + bracketOffset - bracketSize, y - bracketOffset, bracketColor);
     }
 
-    private float getMaxWeaponRange(ShipAPI ship) {
-        float maxRange = 0;
-        for (WeaponAPI weapon : ship.getAllWeapons()) {
-            if (weapon.getRange() > maxRange && !weapon.isDecorative()) {
-                maxRange = weapon.getRange();
+    /**
+     * Slot rings sized to the assigned ships, with a line from each ship to
+     * its slot: solid and faint while previewing, dashed once ordered.
+     */
+    private void drawFormationSlots(FormationPlanner formation, boolean preview, float alpha) {
+        int slotColor = TacticalColors.withAlpha(WAYPOINT_COLOR, (int)((preview ? 120 : 90) * alpha));
+        int lineColor = TacticalColors.withAlpha(WAYPOINT_COLOR, (int)((preview ? 60 : 150) * alpha));
+
+        for (int i = 0; i < formation.size(); i++) {
+            ShipAPI ship = formation.getShip(i);
+            if (!ship.isAlive()) continue;
+
+            float slotX = formation.getSlotX(i);
+            float slotY = formation.getSlotY(i);
+            float radius = formation.getShipRadius(i);
+            if (isCircleVisible(slotX, slotY, radius)) {
+                drawCircle(slotX, slotY, radius, slotColor);
             }
+
+            Vector2f location = ship.getLocation();
+            if (preview) {
+                drawClippedLine(location.x, location.y, slotX, slotY, lineColor);
+            } else {
+                drawDashedLine(location.x, location.y, slotX, slotY, lineColor);
+            }
+        }
+    }
+
+    private void drawSelectionBox(float x1, float y1, float x2, float y2, float alpha) {
+        int fillColor = TacticalColors.withAlpha(SELECTION_COLOR, (int)(30 * alpha));
+        int edgeColor = TacticalColors.withAlpha(SELECTION_COLOR, (int)(200 * alpha));
+
+        batch.quad(x1, y1, x2, y1, x2, y2, x1, y2, fillColor);
+        drawLine(x1, y1, x2, y1, edgeColor);
+        drawLine(x2, y1, x2, y2, edgeColor);
+        drawLine(x2, y2, x1, y2, edgeColor);
+        drawLine(x1, y2, x1, y1, edgeColor);
+    }
+
+    private void drawCircle(float cx, float cy, float radius, int color) {
+        drawCircle(cx, cy, radius, 1f, color);
+    }
+
+    private void drawCircle(float cx, float cy, float radius, float width, int color) {
+        if (rings) {
+            batch.ring(cx, cy, radius, width, viewMult, 0f, 360f, color);
+            return;
+        }
+
+        int segments = TacticalGeometry.segmentsForScreenRadius(radius / viewMult, circleErrorPixels);
+        int step = TacticalGeometry.stepForSegments(segments);
+        float prevX = cx + radius;
+        float prevY = cy;
+        for (int i = 1; i <= segments; i++) {
+            int index = i * step;
+            float x = cx + TacticalGeometry.cos(index) * radius;
+            float y = cy + TacticalGeometry.sin(index) * radius;
+            batch.line(prevX, prevY, x, y, width, color);
+            prevX = x;
+            prevY = y;
         }
-        return maxRange;
     }
 
-    private void drawCircle(float cx, float cy, float radius, Color color) {
-        GL11.glColor4f(color.getRed() / 255f, color.getGreen() / 255f,
-                       color.getBlue() / 255f, color.getAlpha() / 255f);
-        GL11.glBegin(GL11.GL_LINE_LOOP);
-        int segments = 32;
-        for (int i = 0; i < segments; i++) {
-            float angle = (float) (2 * Math.PI * i / segments);
-            float x = cx + (float) Math.cos(angle) * radius;
-            float y = cy + (float) Math.sin(angle) * radius;
-            GL11.glVertex2f(x, y);
+    /** Ellipse with its major axis along the given {@link TacticalGeometry} angle index. */
+    private void drawEllipse(float cx, float cy, float major, float minor, int axisIndex, int color) {
+        float ux = TacticalGeometry.cos(axisIndex);
+        float uy = TacticalGeometry.sin(axisIndex);
+        int segments = TacticalGeometry.segmentsForScreenRadius(major / viewMult, circleErrorPixels);
+        int step = TacticalGeometry.stepForSegments(segments);
+        float prevX = cx + ux * major;
+        float prevY = cy + uy * major;
+        for (int i = 1; i <= segments; i++) {
+            int index = i * step;
+            float a = TacticalGeometry.cos(index) * major;
+            float b = TacticalGeometry.sin(index) * minor;
+            float x = cx + ux * a - uy * b;
+            float y = cy + uy * a + ux * b;
+            batch.line(prevX, prevY, x, y, 1f, color);
+            prevX = x;
+            prevY = y;
         }
-        GL11.glEnd();
     }
 
-    private void drawArc(float cx, float cy, float radius, float startAngle, float endAngle, Color color) {
-        GL11.glColor4f(color.getRed() / 255f, color.getGreen() / 255f,
-                       color.getBlue() / 255f, color.getAlpha() / 255f);
-        GL11.glLineWidth(3f);
-        GL11.glBegin(GL11.GL_LINE_STRIP);
-        int segments = (int) Math.max(8, Math.abs(endAngle - startAngle) / 5);
+    private void drawArc(float cx, float cy, float radius, float startAngle, float endAngle, int color) {
+        float span = endAngle - startAngle;
+        if (rings) {
+            batch.ring(cx, cy, radius, 3f, viewMult, startAngle, span, color);
+            return;
+        }
+
+        int fullSegments = TacticalGeometry.segmentsForScreenRadius(radius / viewMult, circleErrorPixels);
+        int segments = Math.max(2, (int) Math.ceil(fullSegments * Math.abs(span) / 360f));
+        float prevX = 0f;
+        float prevY = 0f;
         for (int i = 0; i <= segments; i++) {
-            float angle = (float) Math.toRadians(startAngle + (endAngle - startAngle) * i / segments);
-            float x = cx + (float) Math.cos(angle) * radius;
-            float y = cy + (float) Math.sin(angle) * radius;
-            GL11.glVertex2f(x, y);
+            int index = TacticalGeometry.indexForDegrees(startAngle + span * i / segments);
+            float x = cx + TacticalGeometry.cos(index) * radius;
+            float y = cy + TacticalGeometry.sin(index) * radius;
+            if (i > 0) {
+                batch.line(prevX, prevY, x, y, 3f, color);
+            }
+            prevX = x;
+            prevY = y;
         }
-        GL11.glEnd();
-        GL11.glLineWidth(1f);
     }
 
-    private void drawLine(float x1, float y1, float x2, float y2, Color color) {
-        GL11.glColor4f(color.getRed() / 255f, color.getGreen() / 255f,
-                       color.getBlue() / 255f, color.getAlpha() / 255f);
-        GL11.glBegin(GL11.GL_LINES);
-        GL11.glVertex2f(x1, y1);
-        GL11.glVertex2f(x2, y2);
-        GL11.glEnd();
+    private void drawLine(float x1, float y1, float x2, float y2, int color) {
+        drawLine(x1, y1, x2, y2, 1f, color);
+    }
+
+    private void drawLine(float x1, float y1, float x2, float y2, float width, int color) {
+        batch.line(x1, y1, x2, y2, width, color);
+    }
+
+    /** Line that is dropped when it misses the view entirely. */
+    private void drawClippedLine(float x1, float y1, float x2, float y2, int color) {
+        if (!TacticalGeometry.clipSegment(x1, y1, x2, y2, viewMinX, viewMinY, viewMaxX, viewMaxY, clipT)) return;
+        batch.line(x1, y1, x2, y2, 1f, color);
     }
 
-    private void drawArrowHead(float tipX, float tipY, org.lwjgl.util.vector.Vector2f direction, Color color) {
-        if (direction.length() < 1f) return;
+    private void drawArrowHead(float tipX, float tipY, float dirX, float dirY, int color) {
+        float length = (float) Math.sqrt(dirX * dirX + dirY * dirY);
+        if (length < 1f) return;
 
-        float angle = (float) Math.atan2(direction.y, direction.x);
+        float nx = dirX / length;
+        float ny = dirY / length;
         float arrowSize = 15f;
-        float arrowAngle = (float) Math.toRadians(150);
 
-        float x1 = tipX + (float) Math.cos(angle + arrowAngle) * arrowSize;
-        float y1 = tipY + (float) Math.sin(angle + arrowAngle) * arrowSize;
-        float x2 = tipX + (float) Math.cos(angle - arrowAngle) * arrowSize;
-        float y2 = tipY + (float) Math.sin(angle - arrowAngle) * arrowSize;
+        // Rotate the direction by +/-150 degrees for the barbs
+        float x1 = tipX + (nx * ARROW_BARB_COS - ny * ARROW_BARB_SIN) * arrowSize;
+        float y1 = tipY + (nx * ARROW_BARB_SIN + ny * ARROW_BARB_COS) * arrowSize;
+        float x2 = tipX + (nx * ARROW_BARB_COS + ny * ARROW_BARB_SIN) * arrowSize;
+        float y2 = tipY + (-nx * ARROW_BARB_SIN + ny * ARROW_BARB_COS) * arrowSize;
+
+        batch.line(tipX, tipY, x1, y1, 1f, color);
+        batch.line(tipX, tipY, x2, y2, 1f, color);
+    }
+
+    /**
+     * Two centered lines of text below a ship: hull class and name, then
+     * flux level and weapon range.
+     */
+    private void drawShipLabel(int i, float x, float top, ShipAPI.HullSize hullSize, int color) {
+        BattleSnapshot s = snapshot;
+        float lineHeight = GlyphAtlas.getLineHeight() * viewMult;
+
+        labelLength = 0;
+        appendLabel(getHullSizeLabel(hullSize), Integer.MAX_VALUE);
+        String name = s.ships[i].getName();
+        if (name != null && !name.isEmpty()) {
+            appendLabel(" ", 1);
+            appendLabel(name, LABEL_MAX_NAME);
+        }
+        drawCenteredLabel(x, top, viewMult, color);
+
+        labelLength = 0;
+        appendLabel((int) (s.flux[i] * 100f + 0.5f));
+        appendLabel("% flux", Integer.MAX_VALUE);
+        float maxRange = metadataCache.get(s.ships[i], s.time).maxRange;
+        if (maxRange > 0f) {
+            appendLabel("  ", 2);
+            appendLabel((int) maxRange);
+            appendLabel(" range", Integer.MAX_VALUE);
+        }
+        drawCenteredLabel(x, top - lineHeight, viewMult, color);
+    }
+
+    /** The input plugin's current message, centered near the top of the screen. */
+    private void drawMessage(ViewportAPI viewport, String message, float alpha) {
+        float pixelSize = viewMult * MESSAGE_SCALE;
+        float x = viewport.getLLX() + viewport.getVisibleWidth() * 0.5f;
+        float top = viewport.getLLY() + viewport.getVisibleHeight() - MESSAGE_TOP_PIXELS * viewMult;
+
+        labelLength = 0;
+        appendLabel(message, labelChars.length);
+        drawCenteredLabel(x, top, pixelSize, TacticalColors.withAlpha(MESSAGE_COLOR, (int)(255 * alpha)));
+    }
+
+    private void drawCenteredLabel(float x, float top, float pixelSize, int color) {
+        float width = GlyphAtlas.getWidth(labelChars, labelLength) * pixelSize;
+        batch.text(x - width * 0.5f, top, labelChars, labelLength, pixelSize, color);
+    }
+
+    private void appendLabel(String text, int maxChars) {
+        int count = Math.min(Math.min(text.length(), maxChars), labelChars.length - labelLength);
+        text.getChars(0, count, labelChars, labelLength);
+        labelLength += count;
+    }
+
+    /** Appends a non-negative number. */
+    private void appendLabel(int value) {
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) digits++;
+        if (labelLength + digits > labelChars.length) return;
 
-        GL11.glColor4f(color.getRed() / 255f, color.getGreen() / 255f,
-                       color.getBlue() / 255f, color.getAlpha() / 255f);
-        GL11.glBegin(GL11.GL_LINES);
-        GL11.glVertex2f(tipX, tipY);
-        GL11.glVertex2f(x1, y1);
-        GL11.glVertex2f(tipX, tipY);
-        GL11.glVertex2f(x2, y2);
-        GL11.glEnd();
+        for (int at = labelLength + digits - 1; at >= labelLength; at--) {
+            labelChars[at] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        labelLength += digits;
     }
 
     private String getHullSizeLabel(ShipAPI.HullSize size) {
@@ -570,55 +1257,35 @@ public class TacticalOverhaulCombatPlugin extends BaseCombatLayeredRenderingPlug
         }
     }
 
-    private void drawShipSizeIndicator(float x, float y, ShipAPI.HullSize size, Color color, float alpha) {
+    private void drawShipSizeIndicator(float x, float y, ShipAPI.HullSize size, int color, float alpha) {
         // Draw size-based symbol below ship
-        float indicatorSize;
-        switch (size) {
-            case CAPITAL_SHIP: indicatorSize = 12f; break;
-            case CRUISER: indicatorSize = 9f; break;
-            case DESTROYER: indicatorSize = 6f; break;
-            case FRIGATE: indicatorSize = 4f; break;
-            default: return;
-        }
+        float indicatorSize = ShipMetadataCache.glyphSizeFor(size);
+        if (indicatorSize <= 0f) return;
 
-        Color indicatorColor = new Color(color.getRed(), color.getGreen(),
-                                          color.getBlue(), (int)(200 * alpha));
+        int indicatorColor = TacticalColors.withAlpha(color, (int)(200 * alpha));
 
         // Draw a diamond shape
-        GL11.glColor4f(indicatorColor.getRed() / 255f, indicatorColor.getGreen() / 255f,
-                       indicatorColor.getBlue() / 255f, indicatorColor.getAlpha() / 255f);
-        GL11.glBegin(GL11.GL_LINE_LOOP);
-        GL11.glVertex2f(x, y + indicatorSize);
-        GL11.glVertex2f(x + indicatorSize, y);
-        GL11.glVertex2f(x, y - indicatorSize);
-        GL11.glVertex2f(x - indicatorSize, y);
-        GL11.glEnd();
+        batch.line(x, y + indicatorSize, x + indicatorSize, y, 1f, indicatorColor);
+        batch.line(x + indicatorSize, y, x, y - indicatorSize, 1f, indicatorColor);
+        batch.line(x, y - indicatorSize, x - indicatorSize, y, 1f, indicatorColor);
+        batch.line(x - indicatorSize, y, x, y + indicatorSize, 1f, indicatorColor);
 
         // Fill for capitals and cruisers
         if (size == ShipAPI.HullSize.CAPITAL_SHIP || size == ShipAPI.HullSize.CRUISER) {
-            GL11.glColor4f(indicatorColor.getRed() / 255f, indicatorColor.getGreen() / 255f,
-                           indicatorColor.getBlue() / 255f, indicatorColor.getAlpha() / 255f * 0.5f);
-            GL11.glBegin(GL11.GL_QUADS);
-            GL11.glVertex2f(x, y + indicatorSize);
-            GL11.glVertex2f(x + indicatorSize, y);
-            GL11.glVertex2f(x, y - indicatorSize);
-            GL11.glVertex2f(x - indicatorSize, y);
-            GL11.glEnd();
+            int fillColor = TacticalColors.withAlpha(indicatorColor, TacticalColors.alpha(indicatorColor) / 2);
+            batch.quad(x, y + indicatorSize, x + indicatorSize, y,
+                       x, y - indicatorSize, x - indicatorSize, y, fillColor);
         }
     }
 
     private void drawWaypoint(float x, float y, float alpha) {
-        Color color = new Color(WAYPOINT_COLOR.getRed(), WAYPOINT_COLOR.getGreen(),
-                                WAYPOINT_COLOR.getBlue(), (int)(200 * alpha));
+        int color = TacticalColors.withAlpha(WAYPOINT_COLOR, (int)(200 * alpha));
 
         // Draw pulsing concentric circles
         float pulse = 0.7f + 0.3f * (float) Math.sin(selectionPulse * 2);
 
-        GL11.glLineWidth(2f);
-        drawCircle(x, y, 30f * pulse, color);
-        drawCircle(x, y, 50f * pulse, new Color(color.getRed(), color.getGreen(),
-                                                  color.getBlue(), (int)(100 * alpha)));
-        GL11.glLineWidth(1f);
+        drawCircle(x, y, 30f * pulse, 2f, color);
+        drawCircle(x, y, 50f * pulse, 2f, TacticalColors.withAlpha(color, (int)(100 * alpha)));
 
         // Draw crosshair
         float crossSize = 20f;
@@ -627,55 +1294,49 @@ public class TacticalOverhaulCombatPlugin extends BaseCombatLayeredRenderingPlug
     }
 
     private void drawAttackMarker(float x, float y, float alpha) {
-        Color color = new Color(ATTACK_LINE_COLOR.getRed(), ATTACK_LINE_COLOR.getGreen(),
-                                ATTACK_LINE_COLOR.getBlue(), (int)(220 * alpha));
+        int color = TacticalColors.withAlpha(ATTACK_LINE_COLOR, (int)(220 * alpha));
 
         // Draw X marker
         float markerSize = 25f;
-        GL11.glLineWidth(3f);
-        drawLine(x - markerSize, y - markerSize, x + markerSize, y + markerSize, color);
-        drawLine(x - markerSize, y + markerSize, x + markerSize, y - markerSize, color);
-        GL11.glLineWidth(1f);
+        drawLine(x - markerSize, y - markerSize, x + markerSize, y + markerSize, 3f, color);
+        drawLine(x - markerSize, y + markerSize, x + markerSize, y - markerSize, 3f, color);
 
         // Draw pulsing circle around
         float pulse = 0.8f + 0.2f * (float) Math.sin(selectionPulse * 3);
-        drawCircle(x, y, 40f * pulse, new Color(color.getRed(), color.getGreen(),
-                                                  color.getBlue(), (int)(150 * alpha)));
+        drawCircle(x, y, 40f * pulse, TacticalColors.withAlpha(color, (int)(150 * alpha)));
     }
 
-    private void drawDashedLine(float x1, float y1, float x2, float y2, Color color) {
+    private void drawDashedLine(float x1, float y1, float x2, float y2, int color) {
         float dx = x2 - x1;
         float dy = y2 - y1;
         float length = (float) Math.sqrt(dx * dx + dy * dy);
         if (length < 1f) return;
 
-        float dashLength = 30f;
-        float gapLength = 20f;
-        float segmentLength = dashLength + gapLength;
-        int segments = (int) (length / segmentLength);
-
-        float nx = dx / length;
-        float ny = dy / length;
-
-        GL11.glColor4f(color.getRed() / 255f, color.getGreen() / 255f,
-                       color.getBlue() / 255f, color.getAlpha() / 255f);
-        GL11.glLineWidth(2f);
-        GL11.glBegin(GL11.GL_LINES);
-
-        for (int i = 0; i <= segments; i++) {
-            float startDist = i * segmentLength;
-            float endDist = Math.min(startDist + dashLength, length);
+        emitDashedLine(x1, y1, x2, y2, length, COMMAND_DASH_PERIOD, 2f, color, true);
+    }
 
-            float sx = x1 + nx * startDist;
-            float sy = y1 + ny * startDist;
-            float ex = x1 + nx * endDist;
-            float ey = y1 + ny * endDist;
+    /**
+     * One segment for the part of the line inside the view, with pattern
+     * coordinates measured from the unclipped start so the dashes don't
+     * slide as the line clips.
+     */
+    private void emitDashedLine(float x1, float y1, float x2, float y2, float length, float period,
+                                float width, int color, boolean flowing) {
+        if (!TacticalGeometry.clipSegment(x1, y1, x2, y2, viewMinX, viewMinY, viewMaxX, viewMaxY, clipT)) return;
+        float t0 = clipT[0];
+        float t1 = clipT[1];
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        batch.dashedLine(x1 + dx * t0, y1 + dy * t0, t0 * length / period,
+                         x1 + dx * t1, y1 + dy * t1, t1 * length / period,
+                         width, color, flowing);
+    }
 
-            GL11.glVertex2f(sx, sy);
-            GL11.glVertex2f(ex, ey);
-        }
+    private boolean isCircleVisible(float x, float y, float radius) {
+        return TacticalGeometry.circleIntersectsRect(x, y, radius, viewMinX, viewMinY, viewMaxX, viewMaxY);
+    }
 
-        GL11.glEnd();
-        GL11.glLineWidth(1f);
+    private boolean isRingVisible(float x, float y, float radius) {
+        return TacticalGeometry.ringIntersectsRect(x, y, radius, viewMinX, viewMinY, viewMaxX, viewMaxY);
     }
 }
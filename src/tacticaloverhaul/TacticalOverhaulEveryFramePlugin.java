@@ -4,13 +4,13 @@ import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.combat.*;
 import com.fs.starfarer.api.input.InputEventAPI;
 import org.lwjgl.input.Keyboard;
-import org.lwjgl.input.Mouse;
 import org.lwjgl.util.vector.Vector2f;
 
 import java.awt.Color;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Tactical Overhaul - Camera and input controller
@@ -19,46 +19,101 @@ import java.util.List;
  * - Backtick (`) to toggle tactical view
  * - Scroll wheel to zoom in/out
  * - Left-click on friendly ship to select it (not your own ship)
+ * - Left-drag to box-select friendly ships (Shift adds to the selection)
  * - Right-click on empty space to order move
  * - Right-click on enemy ship to order attack
+ * - V to cycle move formation (none, line, wedge, box); hold right-click to preview
  * - Right-click + drag to pan camera
  * - Arrow keys to pan
  * - Home or C to re-center on player ship
  * - Escape to deselect
+ * - H to toggle the enemy threat heat map
+ * - O to cycle overlay detail presets (from settings.json)
+ * - F8 to toggle the frame-time profiler HUD
+ * - F9 to start/stop recording battle telemetry
  */
 public class TacticalOverhaulEveryFramePlugin extends BaseEveryFrameCombatPlugin {
 
     private static final int TOGGLE_KEY = Keyboard.KEY_GRAVE;
+    private static final int PROFILER_KEY = Keyboard.KEY_F8;
+    private static final int TELEMETRY_KEY = Keyboard.KEY_F9;
+    private static final int FORMATION_KEY = Keyboard.KEY_V;
+    private static final int THREAT_MAP_KEY = Keyboard.KEY_H;
+    private static final int PRESET_KEY = Keyboard.KEY_O;
 
     private boolean initialized = false;
     private boolean tacticalModeActive = false;
-    private boolean toggleKeyWasPressed = false;
+    private boolean threatMapVisible = false;
+    private int presetIndex = TacticalSettings.get().getDefaultPreset();
+    private boolean battleSummaryLogged = false;
 
     // Panning offset (for right-click drag)
     private Vector2f cameraOffset = new Vector2f(0, 0);
 
-    // Mouse drag state
-    private boolean rightMouseDragging = false;
-    private boolean rightMouseWasDown = false;
-    private int rightMouseStartX = 0;
-    private int rightMouseStartY = 0;
+    // Cursor position from the latest mouse event, in screen pixels
     private int lastMouseX = 0;
     private int lastMouseY = 0;
+
+    // A release is a click if the cursor moved at most CLICK_THRESHOLD pixels,
+    // or at most FAST_CLICK_THRESHOLD within FAST_CLICK_NANOS of the press, so
+    // quick clicks made while the mouse is still moving aren't taken as drags.
+    // Input events carry no timestamps: a press is stamped with the time of
+    // the frame it arrives in and the time is only looked at on release, so a
+    // press and release in the same frame count as quick. A held button is a
+    // drag by distance alone, so a slow frame can't turn it into one.
     private static final int CLICK_THRESHOLD = 5;
+    private static final int FAST_CLICK_THRESHOLD = 15;
+    private static final long FAST_CLICK_NANOS = 200_000_000L;
 
-    // Left click state
-    private boolean leftMouseWasDown = false;
+    // Right button press, from mouse events
+    private boolean rightMouseDown = false;
+    private boolean rightMouseDragging = false;
+    private int rightMouseStartX = 0;
+    private int rightMouseStartY = 0;
+    private long rightMouseDownNanos = 0L;
 
-    // Escape key state
-    private boolean escapeWasPressed = false;
+    // Left button press / box selection, from mouse events
+    private boolean leftMouseDown = false;
+    private boolean leftMouseDragging = false;
+    private int leftMouseStartX = 0;
+    private int leftMouseStartY = 0;
+    private long leftMouseDownNanos = 0L;
+    private final Vector2f boxStartWorld = new Vector2f();
+    private final List<ShipAPI> boxResults = new ArrayList<>();
 
-    // Ship selection (supports multi-select with Shift+click)
-    private List<ShipAPI> selectedShips = new ArrayList<>();
+    // Ship selection (supports multi-select with Shift+click and box drag)
+    private final ShipSelection selectedShips = new ShipSelection();
+
+    // Per-frame view of the battle shared with the render plugin
+    private final BattleSnapshot snapshot = new BattleSnapshot();
+
+    // Player fleet orders for the order-line overlay
+    private static final float ORDER_POLL_INTERVAL = 0.5f;
+    private final AssignmentTracker assignments = new AssignmentTracker(ORDER_POLL_INTERVAL);
+
+    // Formation for move orders; NONE sends every ship to the clicked point
+    private FormationPlanner.Shape formationShape = FormationPlanner.Shape.NONE;
+    private final FormationPlanner formation = new FormationPlanner();
+    private boolean formationPreview = false;
+    private boolean formationCommand = false;
+
+    // Pickable ships, rebuilt from the snapshot each frame while tactical mode is active
+    private final ShipSpatialIndex shipIndex = new ShipSpatialIndex();
 
     // Reference to render plugin
     private TacticalOverhaulCombatPlugin renderPlugin;
 
+    // Engine and GL; the game's own unless stand-ins were injected
+    private final Supplier<CombatEngineAPI> engineSource;
+    private final RenderSink renderSink;
+
+    // Opt-in per-tick battle recording, see TelemetryRecorder
+    private final TelemetryRecorder telemetry = new TelemetryRecorder();
+
     // Command visualization
+    // lastCommandTarget points at commandTargetPos while a move order is shown, so
+    // issuing orders never allocates a new vector
+    private final Vector2f commandTargetPos = new Vector2f();
     private Vector2f lastCommandTarget = null;
     private ShipAPI lastCommandAttackTarget = null;
     private float commandDisplayTime = 0f;
@@ -68,34 +123,65 @@ public class TacticalOverhaulEveryFramePlugin extends BaseEveryFrameCombatPlugin
     private String displayMessage = null;
     private float messageDisplayTime = 0f;
     private static final float MESSAGE_DISPLAY_DURATION = 3.0f;
+    private static final Color AUTOPILOT_HINT_COLOR = new Color(255, 255, 100);
+
+    // Scratch vectors for screen-to-world conversion and formation slots
+    private final Vector2f mouseWorldPos = new Vector2f();
+    private final Vector2f slotPos = new Vector2f();
+
+    // Deployed members of the ships a group order goes to, resolved before
+    // its assignment is created
+    private DeployedFleetMemberAPI[] orderMembers = new DeployedFleetMemberAPI[32];
+
+    public TacticalOverhaulEveryFramePlugin() {
+        this(Global::getCombatEngine, GL11RenderSink.INSTANCE);
+    }
+
+    TacticalOverhaulEveryFramePlugin(Supplier<CombatEngineAPI> engineSource, RenderSink renderSink) {
+        this.engineSource = engineSource;
+        this.renderSink = renderSink;
+    }
 
     @Override
     public void init(CombatEngineAPI engine) {
+        // The previous battle's overlay is replaced on the first frame
+        if (renderPlugin != null) renderPlugin.shutdown();
+        telemetry.stop();
         initialized = false;
         tacticalModeActive = false;
-        toggleKeyWasPressed = false;
+        formation.clear();
+        formationPreview = false;
+        formationCommand = false;
         cameraOffset.set(0, 0);
-        rightMouseDragging = false;
-        rightMouseWasDown = false;
-        leftMouseWasDown = false;
-        escapeWasPressed = false;
-        selectedShips = new ArrayList<>();
+        releaseButtons();
+        selectedShips.clear();
+        snapshot.clear();
+        assignments.clear();
+        shipIndex.clear();
         lastCommandTarget = null;
         lastCommandAttackTarget = null;
         commandDisplayTime = 0f;
         displayMessage = null;
         messageDisplayTime = 0f;
+
+        // Covers a previous battle that was left before it finished
+        if (!battleSummaryLogged) TacticalProfiler.logBattleSummary();
+        TacticalProfiler.resetBattle();
+        battleSummaryLogged = false;
     }
 
     @Override
     public void advance(float amount, List<InputEventAPI> events) {
-        CombatEngineAPI engine = Global.getCombatEngine();
+        CombatEngineAPI engine = engineSource.get();
         if (engine == null) return;
         if (engine.isSimulation()) return;
 
+        long profileStart = TacticalProfiler.start();
+        long budgetStart = System.nanoTime();
+
         // Register rendering plugin once
         if (!initialized) {
-            renderPlugin = new TacticalOverhaulCombatPlugin();
+            renderPlugin = new TacticalOverhaulCombatPlugin(snapshot, assignments, engineSource, renderSink);
             engine.addLayeredRenderingPlugin(renderPlugin);
             initialized = true;
         }
@@ -109,42 +195,28 @@ public class TacticalOverhaulEveryFramePlugin extends BaseEveryFrameCombatPlugin
             }
         }
 
-        // Toggle tactical mode with backtick key
-        boolean toggleKeyPressed = Keyboard.isKeyDown(TOGGLE_KEY);
-        if (toggleKeyPressed && !toggleKeyWasPressed) {
-            tacticalModeActive = !tacticalModeActive;
-
-            if (tacticalModeActive) {
-                cameraOffset.set(0, 0);
-                // Don't take external control - let game handle zoom normally
-            } else {
-                cameraOffset.set(0, 0);
-                selectedShips.clear();
-            }
-        }
-        toggleKeyWasPressed = toggleKeyPressed;
-
-        // Deselect with Escape (with toggle to prevent repeated firing)
-        boolean escapePressed = Keyboard.isKeyDown(Keyboard.KEY_ESCAPE);
-        if (tacticalModeActive && escapePressed && !escapeWasPressed) {
-            selectedShips.clear();
-        }
-        escapeWasPressed = escapePressed;
+        // Mode and hotkeys first, so the rest of the frame sees the new mode
+        handleKeyEvents(events);
 
         // Validate selected ships still exist and are alive
-        Iterator<ShipAPI> iter = selectedShips.iterator();
-        while (iter.hasNext()) {
-            ShipAPI ship = iter.next();
-            if (!ship.isAlive() || ship.isHulk()) {
-                iter.remove();
-            }
+        selectedShips.removeDead();
+
+        // Capture the battle once for this frame while anything will read it
+        boolean overlayVisible = renderPlugin != null && renderPlugin.isOverlayVisible();
+        boolean recording = telemetry.isRecording();
+        if (tacticalModeActive || overlayVisible || recording) {
+            snapshot.capture(engine);
+            assignments.update(engine, snapshot, amount);
         }
 
         // Handle camera and input when in tactical mode
         ViewportAPI viewport = engine.getViewport();
 
         if (tacticalModeActive) {
-            handleMouseInput(engine, viewport);
+            shipIndex.rebuild(snapshot);
+            long inputStart = TacticalProfiler.start();
+            handleMouseEvents(engine, viewport, events);
+            TacticalProfiler.stop(TacticalProfiler.INPUT, inputStart);
             // Let game handle zoom normally - no custom zoom handling
         }
 
@@ -163,81 +235,256 @@ public class TacticalOverhaulEveryFramePlugin extends BaseEveryFrameCombatPlugin
             }
         }
 
-        // Update render plugin
-        if (renderPlugin != null) {
-            renderPlugin.setTacticalModeActive(tacticalModeActive);
-            renderPlugin.setSelectedShips(selectedShips);
-            renderPlugin.setCommandTarget(lastCommandTarget, lastCommandAttackTarget, commandDisplayTime > 0);
-            renderPlugin.setMessage(displayMessage);
+        // Publish overlay state for the render plugin
+        snapshot.tacticalModeActive = tacticalModeActive;
+        snapshot.selection = selectedShips;
+        snapshot.markSelected(selectedShips);
+        snapshot.boxSelecting = tacticalModeActive && leftMouseDragging;
+        snapshot.formation = formation;
+        snapshot.formationPreview = tacticalModeActive && formationPreview;
+        snapshot.formationCommand = formationCommand;
+        snapshot.commandTarget = lastCommandTarget;
+        snapshot.commandAttackTarget = lastCommandAttackTarget;
+        snapshot.showCommand = commandDisplayTime > 0;
+        snapshot.displayMessage = displayMessage;
+        snapshot.threatMapVisible = threatMapVisible;
+        snapshot.preset = TacticalSettings.get().getPreset(presetIndex);
+
+        if (recording && !engine.isPaused()) {
+            telemetry.record(snapshot, assignments);
         }
+
+        // Counted against the overlay's frame budget along with its own work
+        if (renderPlugin != null) renderPlugin.addInputNanos(System.nanoTime() - budgetStart);
+
+        TacticalProfiler.stop(TacticalProfiler.ADVANCE, profileStart);
+        TacticalProfiler.advance(amount);
+
+        if (engine.isCombatOver() && !battleSummaryLogged) {
+            TacticalProfiler.logBattleSummary();
+            telemetry.stop();
+            if (renderPlugin != null) renderPlugin.shutdown();
+            battleSummaryLogged = true;
+        }
+    }
+
+    /** The overlay registered with the engine, or null before the first frame. */
+    TacticalOverhaulCombatPlugin getRenderPlugin() {
+        return renderPlugin;
     }
 
-    private void handleMouseInput(CombatEngineAPI engine, ViewportAPI viewport) {
-        int mouseX = Mouse.getX();
-        int mouseY = Mouse.getY();
-
-        // Handle left click for ship selection (with Shift for multi-select)
-        boolean leftMouseDown = Mouse.isButtonDown(0);
-        boolean shiftHeld = Keyboard.isKeyDown(Keyboard.KEY_LSHIFT) || Keyboard.isKeyDown(Keyboard.KEY_RSHIFT);
-
-        if (leftMouseDown && !leftMouseWasDown) {
-            Vector2f worldPos = screenToWorld(mouseX, mouseY, viewport);
-            ShipAPI clickedShip = getShipAtLocation(engine, worldPos);
-
-            if (clickedShip != null && clickedShip.getOwner() == 0) {
-                // Clicked on friendly ship
-                if (shiftHeld) {
-                    // Shift+click: toggle selection
-                    if (selectedShips.contains(clickedShip)) {
-                        selectedShips.remove(clickedShip);
-                    } else {
-                        selectedShips.add(clickedShip);
-                    }
+    /**
+     * Key presses from this frame's event stream. Keys the mod acts on are
+     * consumed so the game doesn't also react to them.
+     */
+    private void handleKeyEvents(List<InputEventAPI> events) {
+        for (int i = 0; i < events.size(); i++) {
+            InputEventAPI event = events.get(i);
+            if (event.isConsumed() || !event.isKeyDownEvent() || event.isRepeat()) continue;
+
+            int key = event.getEventValue();
+            if (key == TOGGLE_KEY) {
+                // Toggle tactical mode with backtick key
+                setTacticalMode(!tacticalModeActive);
+                event.consume();
+            } else if (key == PROFILER_KEY) {
+                // Toggle the frame-time profiler and its HUD
+                TacticalProfiler.setEnabled(!TacticalProfiler.isEnabled());
+                event.consume();
+            } else if (key == TELEMETRY_KEY) {
+                // Start or stop recording the battle for later review
+                if (telemetry.isRecording()) {
+                    telemetry.stop();
+                    displayMessage = "Telemetry: stopped";
                 } else {
-                    // Regular click: replace selection
-                    selectedShips.clear();
-                    selectedShips.add(clickedShip);
+                    displayMessage = telemetry.start() ? "Telemetry: recording" : "Telemetry: can't write file, see log";
                 }
-            } else if (clickedShip == null && !shiftHeld) {
-                // Clicked on empty space without Shift - deselect all
+                messageDisplayTime = MESSAGE_DISPLAY_DURATION;
+                event.consume();
+            } else if (!tacticalModeActive) {
+                continue;
+            } else if (key == FORMATION_KEY) {
+                // Cycle the move formation
+                formationShape = formationShape.next();
+                displayMessage = "Formation: " + formationShape.getDisplayName();
+                messageDisplayTime = MESSAGE_DISPLAY_DURATION;
+                event.consume();
+            } else if (key == PRESET_KEY) {
+                // Cycle overlay presets, e.g. down to fewer layers on a slow machine
+                TacticalSettings settings = TacticalSettings.get();
+                presetIndex = (presetIndex + 1) % settings.getPresetCount();
+                displayMessage = "Overlay: " + settings.getPreset(presetIndex).name;
+                messageDisplayTime = MESSAGE_DISPLAY_DURATION;
+                event.consume();
+            } else if (key == THREAT_MAP_KEY) {
+                // Toggle the enemy threat heat map
+                threatMapVisible = !threatMapVisible;
+                displayMessage = threatMapVisible ? "Threat map: on" : "Threat map: off";
+                messageDisplayTime = MESSAGE_DISPLAY_DURATION;
+                event.consume();
+            } else if (key == Keyboard.KEY_ESCAPE && !selectedShips.isEmpty()) {
+                // Deselect with Escape; with nothing selected the game gets it as usual
                 selectedShips.clear();
+                event.consume();
             }
         }
-        leftMouseWasDown = leftMouseDown;
+    }
 
-        // Handle right click for commands (with drag detection)
-        boolean rightMouseDown = Mouse.isButtonDown(1);
+    private void setTacticalMode(boolean active) {
+        tacticalModeActive = active;
+        cameraOffset.set(0, 0);
+        // Don't take external control - let game handle zoom normally
+        if (!active) {
+            selectedShips.clear();
+            releaseButtons();
+        }
+    }
+
+    private void releaseButtons() {
+        leftMouseDown = false;
+        leftMouseDragging = false;
+        rightMouseDown = false;
+        rightMouseDragging = false;
+        formationPreview = false;
+    }
+
+    /**
+     * Mouse presses and releases from this frame's event stream. Every press
+     * and release is seen even when several arrive in one slow frame, and
+     * button events are consumed so the game doesn't act on them too.
+     */
+    private void handleMouseEvents(CombatEngineAPI engine, ViewportAPI viewport, List<InputEventAPI> events) {
+        long now = System.nanoTime();
+
+        for (int i = 0; i < events.size(); i++) {
+            InputEventAPI event = events.get(i);
+            if (event.isConsumed() || !event.isMouseEvent()) continue;
+
+            int mouseX = event.getX();
+            int mouseY = event.getY();
+            lastMouseX = mouseX;
+            lastMouseY = mouseY;
+
+            if (event.isLMBDownEvent()) {
+                leftMouseDown = true;
+                leftMouseStartX = mouseX;
+                leftMouseStartY = mouseY;
+                leftMouseDownNanos = now;
+                screenToWorld(mouseX, mouseY, viewport, boxStartWorld);
+                event.consume();
+            } else if (event.isLMBUpEvent() && leftMouseDown) {
+                // Left click selects, left drag selects everything friendly in the box
+                leftMouseDown = false;
+                leftMouseDragging = false;
+                if (isClick(leftMouseStartX, leftMouseStartY, leftMouseDownNanos, mouseX, mouseY, now)) {
+                    Vector2f worldPos = screenToWorld(mouseX, mouseY, viewport, mouseWorldPos);
+                    selectAt(worldPos, event.isShiftDown());
+                } else {
+                    updateSelectionBox(mouseX, mouseY, viewport);
+                    selectInBox(event.isShiftDown());
+                }
+                event.consume();
+            } else if (event.isRMBDownEvent()) {
+                rightMouseDown = true;
+                rightMouseStartX = mouseX;
+                rightMouseStartY = mouseY;
+                rightMouseDownNanos = now;
+                event.consume();
+            } else if (event.isRMBUpEvent() && rightMouseDown) {
+                // Right click orders the selection; a right drag does nothing
+                rightMouseDown = false;
+                rightMouseDragging = false;
+                if (isClick(rightMouseStartX, rightMouseStartY, rightMouseDownNanos, mouseX, mouseY, now)
+                    && !selectedShips.isEmpty()) {
+                    Vector2f worldPos = screenToWorld(mouseX, mouseY, viewport, mouseWorldPos);
+                    issueCommandToAll(engine, worldPos);
+                }
+                event.consume();
+            }
+        }
 
-        if (rightMouseDown && !rightMouseWasDown) {
-            rightMouseStartX = mouseX;
-            rightMouseStartY = mouseY;
-            rightMouseDragging = false;
+        // Buttons still held: drag state and previews follow the cursor
+        leftMouseDragging = leftMouseDown && isDrag(leftMouseStartX, leftMouseStartY, lastMouseX, lastMouseY);
+        if (leftMouseDragging) {
+            updateSelectionBox(lastMouseX, lastMouseY, viewport);
         }
 
-        if (rightMouseDown) {
-            int dx = Math.abs(mouseX - rightMouseStartX);
-            int dy = Math.abs(mouseY - rightMouseStartY);
-            if (dx > CLICK_THRESHOLD || dy > CLICK_THRESHOLD) {
-                rightMouseDragging = true;
+        rightMouseDragging = rightMouseDown && isDrag(rightMouseStartX, rightMouseStartY, lastMouseX, lastMouseY);
+
+        // Preview formation slots while the button is held over open space
+        formationPreview = false;
+        if (rightMouseDown && !rightMouseDragging && usesFormation()) {
+            Vector2f worldPos = screenToWorld(lastMouseX, lastMouseY, viewport, mouseWorldPos);
+            ShipAPI underCursor = shipIndex.shipAt(worldPos.x, worldPos.y);
+            if (underCursor == null || underCursor.getOwner() != 1) {
+                formation.plan(formationShape, selectedShips, worldPos.x, worldPos.y);
+                formationPreview = true;
             }
         }
+    }
+
+    /** Whether a held button has moved far enough to be a drag; distance only. */
+    private static boolean isDrag(int startX, int startY, int x, int y) {
+        return Math.max(Math.abs(x - startX), Math.abs(y - startY)) > CLICK_THRESHOLD;
+    }
 
-        if (!rightMouseDown && rightMouseWasDown) {
-            if (!rightMouseDragging && !selectedShips.isEmpty()) {
-                Vector2f worldPos = screenToWorld(mouseX, mouseY, viewport);
-                issueCommandToAll(engine, worldPos);
+    /** Whether a release is a click, with times at frame resolution. */
+    private static boolean isClick(int startX, int startY, long startNanos, int x, int y, long nowNanos) {
+        int moved = Math.max(Math.abs(x - startX), Math.abs(y - startY));
+        if (moved <= CLICK_THRESHOLD) return true;
+        return moved <= FAST_CLICK_THRESHOLD && nowNanos - startNanos < FAST_CLICK_NANOS;
+    }
+
+    private void updateSelectionBox(int mouseX, int mouseY, ViewportAPI viewport) {
+        Vector2f worldPos = screenToWorld(mouseX, mouseY, viewport, mouseWorldPos);
+        snapshot.boxStartX = boxStartWorld.x;
+        snapshot.boxStartY = boxStartWorld.y;
+        snapshot.boxEndX = worldPos.x;
+        snapshot.boxEndY = worldPos.y;
+    }
+
+    private void selectAt(Vector2f worldPos, boolean shiftHeld) {
+        ShipAPI clickedShip = shipIndex.shipAt(worldPos.x, worldPos.y);
+
+        if (clickedShip != null && clickedShip.getOwner() == 0) {
+            // Clicked on friendly ship
+            if (shiftHeld) {
+                // Shift+click: toggle selection
+                selectedShips.toggle(clickedShip);
+            } else {
+                // Regular click: replace selection
+                selectedShips.clear();
+                selectedShips.add(clickedShip);
             }
-            rightMouseDragging = false;
+        } else if (clickedShip == null && !shiftHeld) {
+            // Clicked on empty space without Shift - deselect all
+            selectedShips.clear();
         }
+    }
 
-        rightMouseWasDown = rightMouseDown;
+    private void selectInBox(boolean shiftHeld) {
+        float minX = Math.min(snapshot.boxStartX, snapshot.boxEndX);
+        float minY = Math.min(snapshot.boxStartY, snapshot.boxEndY);
+        float maxX = Math.max(snapshot.boxStartX, snapshot.boxEndX);
+        float maxY = Math.max(snapshot.boxStartY, snapshot.boxEndY);
+
+        // Shift adds to the selection, otherwise the box replaces it
+        if (!shiftHeld) selectedShips.clear();
+
+        boxResults.clear();
+        shipIndex.queryRect(minX, minY, maxX, maxY, boxResults);
+        for (int i = 0; i < boxResults.size(); i++) {
+            ShipAPI ship = boxResults.get(i);
+            if (ship.getOwner() == 0) selectedShips.add(ship);
+        }
+        boxResults.clear();
     }
 
     private void issueCommandToAll(CombatEngineAPI engine, Vector2f targetPos) {
         if (selectedShips.isEmpty()) return;
 
         // Check what we're targeting
-        ShipAPI targetShip = getShipAtLocation(engine, targetPos);
+        ShipAPI targetShip = shipIndex.shipAt(targetPos.x, targetPos.y);
         boolean isAttackCommand = (targetShip != null && targetShip.getOwner() == 1 && !targetShip.isFighter());
 
         // Set visualization (for the group)
@@ -245,103 +492,163 @@ public class TacticalOverhaulEveryFramePlugin extends BaseEveryFrameCombatPlugin
             lastCommandTarget = null;
             lastCommandAttackTarget = targetShip;
         } else {
-            lastCommandTarget = new Vector2f(targetPos);
+            commandTargetPos.set(targetPos);
+            lastCommandTarget = commandTargetPos;
             lastCommandAttackTarget = null;
         }
         commandDisplayTime = COMMAND_DISPLAY_DURATION;
+        formationCommand = false;
 
-        // Issue command to all selected ships
-        for (ShipAPI ship : selectedShips) {
-            issueCommandToShip(engine, ship, targetPos, targetShip, isAttackCommand);
+        // Managers are resolved once per order, not once per ship
+        CombatFleetManagerAPI fleetManager = engine.getFleetManager(0);
+        if (fleetManager == null) return;
+        CombatTaskManagerAPI taskManager = fleetManager.getTaskManager(false);
+        if (taskManager == null) return;
+
+        if (!isAttackCommand && usesFormation()) {
+            issueFormationMove(engine, fleetManager, taskManager, targetPos);
+            return;
         }
-    }
 
-    private void issueCommandToShip(CombatEngineAPI engine, ShipAPI selectedShip, Vector2f targetPos,
-                                     ShipAPI targetShip, boolean isAttackCommand) {
         ShipAPI playerShip = engine.getPlayerShip();
-        boolean isPlayerShip = (selectedShip == playerShip);
+        boolean orderedPlayerShip = false;
+        int memberCount = 0;
+        for (int i = 0; i < selectedShips.size(); i++) {
+            ShipAPI ship = selectedShips.get(i);
+            DeployedFleetMemberAPI member = deployedMember(fleetManager, ship);
+            if (member == null) continue;
+            if (memberCount == orderMembers.length) {
+                orderMembers = Arrays.copyOf(orderMembers, memberCount * 2);
+            }
+            orderMembers[memberCount++] = member;
+            if (ship == playerShip) orderedPlayerShip = true;
+        }
 
-        CombatFleetManagerAPI fleetManager = engine.getFleetManager(0);
-        if (fleetManager == null) return;
+        // No one to take the order: an assignment without members would be
+        // left on the map for the admiral AI to staff
+        if (memberCount == 0) return;
+
+        // One waypoint/assignment for the whole group, so a 30-ship move is one
+        // order for the AI and one entry on the map instead of thirty
+        CombatFleetManagerAPI.AssignmentInfo assignment = isAttackCommand
+            ? createAttackAssignment(engine, taskManager, targetShip)
+            : createMoveAssignment(fleetManager, taskManager, targetPos);
+        if (assignment != null) {
+            for (int i = 0; i < memberCount; i++) {
+                taskManager.giveAssignment(orderMembers[i], assignment, false);
+            }
+        }
+        Arrays.fill(orderMembers, 0, memberCount, null);
+        if (assignment == null) return;
 
-        DeployedFleetMemberAPI deployedMember = fleetManager.getDeployedFleetMember(selectedShip);
-        if (deployedMember == null) {
-            deployedMember = fleetManager.getDeployedFleetMemberEvenIfDisabled(selectedShip);
+        // Show the new order lines right away instead of at the next poll
+        assignments.markDirty();
+
+        // If commanding the player's ship, show message about autopilot
+        if (orderedPlayerShip) {
+            showAutopilotHint(engine, playerShip);
         }
-        if (deployedMember == null) return;
+    }
 
-        CombatTaskManagerAPI taskManager = fleetManager.getTaskManager(false);
-        if (taskManager == null) return;
+    /** True when move orders should be spread over formation slots. */
+    private boolean usesFormation() {
+        return formationShape != FormationPlanner.Shape.NONE && selectedShips.size() >= 2;
+    }
 
-        if (isAttackCommand && targetShip != null) {
-            // Issue attack order
-            CombatFleetManagerAPI enemyFleetManager = engine.getFleetManager(1);
-            if (enemyFleetManager != null) {
-                DeployedFleetMemberAPI enemyDeployed = enemyFleetManager.getDeployedFleetMember(targetShip);
-                if (enemyDeployed == null) {
-                    enemyDeployed = enemyFleetManager.getDeployedFleetMemberEvenIfDisabled(targetShip);
-                }
-                if (enemyDeployed != null) {
-                    CombatFleetManagerAPI.AssignmentInfo assignment = taskManager.createAssignment(
-                        CombatAssignmentType.INTERCEPT, enemyDeployed, false);
-                    taskManager.giveAssignment(deployedMember, assignment, false);
-                }
+    /**
+     * Gives each selected ship its own waypoint at its formation slot, so the
+     * group arrives spread out instead of converging on one point.
+     */
+    private void issueFormationMove(CombatEngineAPI engine, CombatFleetManagerAPI fleetManager,
+                                    CombatTaskManagerAPI taskManager, Vector2f targetPos) {
+        formation.plan(formationShape, selectedShips, targetPos.x, targetPos.y);
+        formationCommand = true;
+
+        ShipAPI playerShip = engine.getPlayerShip();
+        boolean orderedPlayerShip = false;
+        for (int i = 0; i < formation.size(); i++) {
+            ShipAPI ship = formation.getShip(i);
+            slotPos.set(formation.getSlotX(i), formation.getSlotY(i));
+            if (issueCommandToShip(fleetManager, taskManager, ship, slotPos) && ship == playerShip) {
+                orderedPlayerShip = true;
             }
-        } else {
-            // Issue move order using DEFEND on a waypoint
-            AssignmentTargetAPI waypoint = fleetManager.createWaypoint(targetPos, false);
-            CombatFleetManagerAPI.AssignmentInfo assignment = taskManager.createAssignment(
-                CombatAssignmentType.DEFEND, waypoint, false);
-            taskManager.giveAssignment(deployedMember, assignment, false);
         }
 
-        // If commanding the player's ship, show message about autopilot
-        if (isPlayerShip) {
-            displayMessage = "Press U to enable autopilot for your ship";
-            messageDisplayTime = MESSAGE_DISPLAY_DURATION;
-
-            // Show floating text at ship location
-            engine.addFloatingText(
-                selectedShip.getLocation(),
-                "Press U for autopilot",
-                25f,
-                new Color(255, 255, 100),
-                selectedShip,
-                0.5f,
-                2.0f
-            );
+        assignments.markDirty();
+
+        if (orderedPlayerShip) {
+            showAutopilotHint(engine, playerShip);
         }
     }
 
-    private ShipAPI getShipAtLocation(CombatEngineAPI engine, Vector2f worldPos) {
-        ShipAPI closest = null;
-        float closestDist = Float.MAX_VALUE;
+    /** Move order to a single ship; @return true if it was given */
+    private boolean issueCommandToShip(CombatFleetManagerAPI fleetManager, CombatTaskManagerAPI taskManager,
+                                       ShipAPI ship, Vector2f targetPos) {
+        // Checked first so an undeployed ship doesn't leave an empty waypoint behind
+        DeployedFleetMemberAPI member = deployedMember(fleetManager, ship);
+        if (member == null) return false;
 
-        for (ShipAPI ship : engine.getShips()) {
-            if (ship.isHulk() || ship.isShuttlePod() || ship.isFighter()) continue;
+        CombatFleetManagerAPI.AssignmentInfo assignment = createMoveAssignment(fleetManager, taskManager, targetPos);
+        if (assignment == null) return false;
 
-            float dist = getDistance(ship.getLocation(), worldPos);
-            float hitRadius = ship.getCollisionRadius();
+        taskManager.giveAssignment(member, assignment, false);
+        return true;
+    }
 
-            if (dist < hitRadius && dist < closestDist) {
-                closest = ship;
-                closestDist = dist;
-            }
+    private CombatFleetManagerAPI.AssignmentInfo createAttackAssignment(CombatEngineAPI engine,
+                                                                       CombatTaskManagerAPI taskManager,
+                                                                       ShipAPI targetShip) {
+        CombatFleetManagerAPI enemyFleetManager = engine.getFleetManager(1);
+        if (enemyFleetManager == null) return null;
+
+        DeployedFleetMemberAPI enemyDeployed = enemyFleetManager.getDeployedFleetMember(targetShip);
+        if (enemyDeployed == null) {
+            enemyDeployed = enemyFleetManager.getDeployedFleetMemberEvenIfDisabled(targetShip);
         }
+        if (enemyDeployed == null) return null;
 
-        return closest;
+        return taskManager.createAssignment(CombatAssignmentType.INTERCEPT, enemyDeployed, false);
+    }
+
+    private CombatFleetManagerAPI.AssignmentInfo createMoveAssignment(CombatFleetManagerAPI fleetManager,
+                                                                     CombatTaskManagerAPI taskManager,
+                                                                     Vector2f targetPos) {
+        // Move orders are DEFEND on a waypoint; the waypoint gets its own copy of
+        // the position since targetPos is a reused scratch vector
+        AssignmentTargetAPI waypoint = fleetManager.createWaypoint(new Vector2f(targetPos), false);
+        return taskManager.createAssignment(CombatAssignmentType.DEFEND, waypoint, false);
+    }
+
+    /** @return the ship's deployed fleet member, or null if it isn't deployed */
+    private static DeployedFleetMemberAPI deployedMember(CombatFleetManagerAPI fleetManager, ShipAPI ship) {
+        DeployedFleetMemberAPI deployedMember = fleetManager.getDeployedFleetMember(ship);
+        if (deployedMember == null) {
+            deployedMember = fleetManager.getDeployedFleetMemberEvenIfDisabled(ship);
+        }
+        return deployedMember;
     }
 
-    private float getDistance(Vector2f a, Vector2f b) {
-        float dx = a.x - b.x;
-        float dy = a.y - b.y;
-        return (float) Math.sqrt(dx * dx + dy * dy);
+    private void showAutopilotHint(CombatEngineAPI engine, ShipAPI playerShip) {
+        displayMessage = "Press U to enable autopilot for your ship";
+        messageDisplayTime = MESSAGE_DISPLAY_DURATION;
+
+        // Show floating text at ship location
+        engine.addFloatingText(
+            playerShip.getLocation(),
+            "Press U for autopilot",
+            25f,
+            AUTOPILOT_HINT_COLOR,
+            playerShip,
+            0.5f,
+            2.0f
+        );
     }
 
-    private Vector2f screenToWorld(int screenX, int screenY, ViewportAPI viewport) {
+    private Vector2f screenToWorld(int screenX, int screenY, ViewportAPI viewport, Vector2f out) {
         float worldX = viewport.convertScreenXToWorldX(screenX);
         float worldY = viewport.convertScreenYToWorldY(screenY);
-        return new Vector2f(worldX, worldY);
+        out.set(worldX, worldY);
+        return out;
     }
 
 }
@@ -8,6 +8,8 @@ public class TacticalOverhaulModPlugin extends BaseModPlugin {
 
     @Override
     public void onApplicationLoad() throws Exception {
+        TacticalSettings.load();
+        GlyphAtlas.isAvailable(); // Rasterize the label font now rather than in the first battle
         Global.getLogger(this.getClass()).info("Tactical Overhaul loaded!");
     }
 
@@ -0,0 +1,260 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.Global;
+import org.apache.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Frame-time profiler for the tactical plugins.
+ *
+ * Hot paths bracket their work with {@link #start()} / {@link #stop}. While
+ * profiling is off, start() returns 0 and stop() returns straight away, so
+ * the instrumentation costs a field read and a branch. While on, each span
+ * goes into two fixed-size, lock-free histograms per phase: a short rolling
+ * window for the on-screen HUD and a whole-battle one for the summary
+ * written to the log when the battle ends.
+ *
+ * Also samples bytes allocated by the game thread across the overlay's
+ * render pass where the JVM supports per-thread allocation counters, so
+ * garbage creeping back into the frame shows up alongside the timings.
+ */
+public final class TacticalProfiler {
+
+    public static final int ADVANCE = 0;
+    public static final int INPUT = 1;
+    public static final int RENDER = 2;
+    public static final int DRAW_SHIPS = 3;
+    public static final int DRAW_ORDERS = 4;
+    public static final int DRAW_OBJECTIVES = 5;
+    public static final int DRAW_SELECTION = 6;
+    public static final int DRAW_SCANLINES = 7;
+    public static final int FLUSH = 8;
+    public static final int PHASE_COUNT = 9;
+
+    private static final String[] PHASE_NAMES = {
+        "advance", "input", "render", "ships", "orders", "objectives", "selection", "scanlines", "flush"
+    };
+
+    // Rolling window shown on the HUD
+    private static final float WINDOW_SECONDS = 2f;
+
+    private static final Logger log = Global.getLogger(TacticalProfiler.class);
+
+    private static boolean enabled = false;
+
+    private static final Histogram[] window = new Histogram[PHASE_COUNT];
+    private static final Histogram[] battle = new Histogram[PHASE_COUNT];
+    private static final Histogram[] shownWindow = new Histogram[PHASE_COUNT];
+    private static float windowAge = 0f;
+
+    // Bytes allocated on the game thread per render pass, over the battle
+    private static final Histogram renderAllocations = new Histogram();
+    private static ThreadMXBean threadBean = null;
+    private static boolean allocationCountersChecked = false;
+
+    static {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            window[i] = new Histogram();
+            battle[i] = new Histogram();
+            shownWindow[i] = new Histogram();
+        }
+    }
+
+    private TacticalProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /** Start of a span: a nanoTime stamp, or 0 when profiling is off. */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void stop(int phase, long startNanos) {
+        if (startNanos == 0L) return;
+        long elapsed = System.nanoTime() - startNanos;
+        window[phase].record(elapsed);
+        battle[phase].record(elapsed);
+    }
+
+    /** Allocation counter for the current thread, or -1 when off or unsupported. */
+    public static long allocatedBytes() {
+        if (!enabled) return -1L;
+        ThreadMXBean bean = threadBean();
+        if (bean == null) return -1L;
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void recordRenderAllocation(long startBytes) {
+        if (startBytes < 0L) return;
+        long now = allocatedBytes();
+        if (now >= startBytes) renderAllocations.record(now - startBytes);
+    }
+
+    /**
+     * Rolls the HUD window. Called once per frame from the input plugin.
+     */
+    public static void advance(float amount) {
+        if (!enabled) return;
+        windowAge += amount;
+        if (windowAge < WINDOW_SECONDS) return;
+        windowAge = 0f;
+
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            shownWindow[i].copyFrom(window[i]);
+            window[i].reset();
+        }
+    }
+
+    /** Histogram of the last complete HUD window for the phase. */
+    public static Histogram getWindow(int phase) {
+        return shownWindow[phase];
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * Writes the per-battle summary to the log, if anything was recorded,
+     * and starts a fresh battle.
+     */
+    public static void logBattleSummary() {
+        if (battle[RENDER].getCount() == 0 && battle[ADVANCE].getCount() == 0) return;
+
+        StringBuilder sb = new StringBuilder("Tactical Overhaul frame times (microseconds, p50/p95/p99/max):");
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            Histogram h = battle[i];
+            if (h.getCount() == 0) continue;
+            sb.append("\n  ").append(PHASE_NAMES[i])
+              .append(": n=").append(h.getCount())
+              .append(' ').append(h.percentile(0.50) / 1000)
+              .append('/').append(h.percentile(0.95) / 1000)
+              .append('/').append(h.percentile(0.99) / 1000)
+              .append('/').append(h.getMax() / 1000);
+        }
+        if (renderAllocations.getCount() > 0) {
+            sb.append("\n  render allocations (bytes) p50/p99/max: ")
+              .append(renderAllocations.percentile(0.50)).append('/')
+              .append(renderAllocations.percentile(0.99)).append('/')
+              .append(renderAllocations.getMax());
+        }
+        log.info(sb.toString());
+
+        resetBattle();
+    }
+
+    public static void resetBattle() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            battle[i].reset();
+            window[i].reset();
+            shownWindow[i].reset();
+        }
+        renderAllocations.reset();
+        windowAge = 0f;
+    }
+
+    private static ThreadMXBean threadBean() {
+        if (!allocationCountersChecked) {
+            allocationCountersChecked = true;
+            try {
+                ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                    ((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+                    threadBean = bean;
+                }
+            } catch (Throwable t) {
+                log.info("Per-thread allocation counters unavailable, skipping allocation sampling");
+            }
+        }
+        return threadBean;
+    }
+
+    /**
+     * Fixed-size log-linear histogram of non-negative longs. Buckets are
+     * powers of two split into four linear sub-buckets, giving roughly 20%
+     * precision over the whole range. Recording is lock-free.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray totals = new AtomicLongArray(2); // count, max
+
+        public void record(long value) {
+            if (value < 0L) value = 0L;
+            counts.incrementAndGet(bucketFor(value));
+            totals.incrementAndGet(0);
+
+            long max;
+            do {
+                max = totals.get(1);
+                if (value <= max) break;
+            } while (!totals.compareAndSet(1, max, value));
+        }
+
+        public long getCount() {
+            return totals.get(0);
+        }
+
+        public long getMax() {
+            return totals.get(1);
+        }
+
+        /** Upper bound of the bucket holding the given quantile (0-1), 0 if empty. */
+        public long percentile(double quantile) {
+            long total = getCount();
+            if (total == 0L) return 0L;
+
+            long rank = (long) Math.ceil(quantile * total);
+            if (rank < 1L) rank = 1L;
+
+            long seen = 0L;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) return Math.min(bucketUpperBound(i), getMax());
+            }
+            return getMax();
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) counts.set(i, 0L);
+            totals.set(0, 0L);
+            totals.set(1, 0L);
+        }
+
+        void copyFrom(Histogram other) {
+            for (int i = 0; i < BUCKETS; i++) counts.set(i, other.counts.get(i));
+            totals.set(0, other.totals.get(0));
+            totals.set(1, other.totals.get(1));
+        }
+
+        private static int bucketFor(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long bucketUpperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            long base = 1L << magnitude;
+            long width = base >>> SUB_BUCKET_BITS;
+            return base + (sub + 1) * width - 1;
+        }
+    }
+}
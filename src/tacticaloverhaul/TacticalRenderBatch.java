@@ -0,0 +1,547 @@
+package tacticaloverhaul;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Collects the tactical overlay's geometry for one frame and draws it with
+ * a handful of vertex-array calls instead of one glBegin/glEnd per primitive.
+ *
+ * Vertices are interleaved as x, y, r, g, b, a, one buffer per GL state
+ * (primitive type + line width / point size). Line loops and strips are
+ * written as plain GL_LINES and quads as GL_TRIANGLES so that everything
+ * sharing a state can go out in a single glDrawArrays.
+ *
+ * Colors are packed ARGB ints (see {@link TacticalColors}). Once the buffers
+ * have grown to a battle's size, recording a frame allocates nothing.
+ *
+ * A batch can also be kept across frames: {@link #draw} leaves the geometry
+ * in place, and vertices written after {@link #setVelocity} can be moved
+ * forward in time with {@link #extrapolate}, so geometry that follows a
+ * ship stays on it between rebuilds.
+ *
+ * Dashed lines are single segments carrying a pattern coordinate per end;
+ * the dashes come from {@link DashTexture} when drawn, so a line costs two
+ * vertices however long it is. Flowing dashes are shifted along their lines
+ * by {@link #setFlowOffset} at draw time.
+ *
+ * Rings and arcs from {@link #ring} are drawn by {@link RingShader}: each
+ * is a quad, or for big rings a band of a few quads hugging the outline,
+ * whose fragments are shaded by distance from the ring. Their vertices
+ * carry the offset from the ring's center, radius, half width and arc span
+ * besides position and color.
+ *
+ * Text from {@link #text} is a quad per character carrying texture
+ * coordinates into {@link GlyphAtlas}. All text in a batch goes out in one
+ * draw, after everything else.
+ */
+public class TacticalRenderBatch {
+
+    /** Draw passes: fills, rings, lines, points, text. See {@link #drawPass}. */
+    public static final int DRAW_PASSES = 5;
+
+    private static final int FLOATS_PER_VERTEX = 6; // x, y, r, g, b, a
+    private static final int FLOATS_PER_DASHED_VERTEX = 7; // x, y, r, g, b, a, s
+    // x, y, r, g, b, a, offset x, offset y, radius, half width, arc start, arc span
+    private static final int FLOATS_PER_RING_VERTEX = 12;
+    private static final int FLOATS_PER_TEXT_VERTEX = 8; // x, y, r, g, b, a, u, v
+
+    private static final int KIND_PLAIN = 0;
+    private static final int KIND_DASHED = 1;
+    private static final int KIND_DASHED_FLOWING = 2;
+    private static final int KIND_RING = 3;
+    private static final int KIND_TEXT = 4;
+
+    // Rings up to this screen radius are one quad; bigger ones are a band of
+    // quads whose outer edge stays within RING_BAND_SAG_PIXELS of the ring
+    private static final float RING_QUAD_MAX_PIXELS = 96f;
+    private static final float RING_BAND_SAG_PIXELS = 8f;
+    private static final float FULL_CIRCLE = (float) (Math.PI * 2);
+    private static final int INITIAL_VERTICES = 1024;
+    private static final int INITIAL_BUCKETS = 16;
+
+    // Buckets are kept sorted by draw order: fills, then lines, then points,
+    // each by ascending width. New states are rare, so insertion is fine, and
+    // the array grows if a frame needs more of them; buckets outlive frames,
+    // so it only grows once.
+    private Bucket[] buckets = new Bucket[INITIAL_BUCKETS];
+    private int bucketCount = 0;
+    private Bucket lastBucket = null;
+
+    // Unpacked form of the last color seen; consecutive vertices usually share one
+    private int lastColor = 0;
+    private float red = 0f;
+    private float green = 0f;
+    private float blue = 0f;
+    private float alpha = 0f;
+
+    // World units per second applied to vertices by extrapolate()
+    private float velocityX = 0f;
+    private float velocityY = 0f;
+
+    // Pattern offset for flowing dashes, in pattern periods
+    private float flowOffset = 0f;
+
+    private static final class Bucket {
+        final int mode;
+        final float width;
+        final int kind;
+        final int stride;
+
+        // Vertices are written to a heap array and copied to the direct
+        // buffer in one bulk put when drawn, and only if they changed
+        float[] data;
+        FloatBuffer buffer;
+        int vertexCount = 0;
+        boolean uploaded = false;
+
+        // Per-vertex velocity (x, y), only kept once a moving vertex is written
+        float[] velocities = null;
+        boolean moving = false;
+
+        Bucket(int mode, float width, int kind) {
+            this.mode = mode;
+            this.width = width;
+            this.kind = kind;
+            stride = kind == KIND_RING ? FLOATS_PER_RING_VERTEX
+                : kind == KIND_TEXT ? FLOATS_PER_TEXT_VERTEX
+                : kind == KIND_PLAIN ? FLOATS_PER_VERTEX : FLOATS_PER_DASHED_VERTEX;
+            data = new float[INITIAL_VERTICES * stride];
+            buffer = BufferUtils.createFloatBuffer(INITIAL_VERTICES * stride);
+        }
+
+        void ensureCapacity(int extraVertices) {
+            int needed = (vertexCount + extraVertices) * stride;
+            if (needed <= data.length) return;
+
+            int newCapacity = data.length * 2;
+            while (newCapacity < needed) newCapacity *= 2;
+            data = Arrays.copyOf(data, newCapacity);
+        }
+
+        void vertex(float x, float y, float r, float g, float b, float a, float vx, float vy) {
+            if (vx != 0f || vy != 0f || moving) {
+                int needed = (vertexCount + 1) * 2;
+                if (velocities == null || velocities.length < needed) {
+                    velocities = velocities == null
+                        ? new float[Math.max(needed, INITIAL_VERTICES * 2)]
+                        : Arrays.copyOf(velocities, Math.max(needed, velocities.length * 2));
+                }
+                if (!moving) {
+                    Arrays.fill(velocities, 0, vertexCount * 2, 0f);
+                    moving = true;
+                }
+                velocities[vertexCount * 2] = vx;
+                velocities[vertexCount * 2 + 1] = vy;
+            }
+
+            int at = vertexCount * stride;
+            float[] d = data;
+            d[at] = x;
+            d[at + 1] = y;
+            d[at + 2] = r;
+            d[at + 3] = g;
+            d[at + 4] = b;
+            d[at + 5] = a;
+            vertexCount++;
+            uploaded = false;
+        }
+
+        void dashedVertex(float x, float y, float s, float r, float g, float b, float a, float vx, float vy) {
+            data[vertexCount * stride + 6] = s;
+            vertex(x, y, r, g, b, a, vx, vy);
+        }
+
+        void ringVertex(float x, float y, float cx, float cy, float radius, float halfWidth,
+                        float arcStart, float arcSpan, float r, float g, float b, float a, float vx, float vy) {
+            int at = vertexCount * stride;
+            float[] d = data;
+            d[at + 6] = x - cx;
+            d[at + 7] = y - cy;
+            d[at + 8] = radius;
+            d[at + 9] = halfWidth;
+            d[at + 10] = arcStart;
+            d[at + 11] = arcSpan;
+            vertex(x, y, r, g, b, a, vx, vy);
+        }
+
+        void textVertex(float x, float y, float u, float v, float r, float g, float b, float a) {
+            int at = vertexCount * stride;
+            data[at + 6] = u;
+            data[at + 7] = v;
+            vertex(x, y, r, g, b, a, 0f, 0f);
+        }
+
+        FloatBuffer upload() {
+            if (!uploaded) {
+                int floats = vertexCount * stride;
+                if (buffer.capacity() < floats) {
+                    buffer = BufferUtils.createFloatBuffer(data.length);
+                }
+                buffer.clear();
+                buffer.put(data, 0, floats);
+                buffer.flip();
+                uploaded = true;
+            }
+            return buffer;
+        }
+
+        void clear() {
+            vertexCount = 0;
+            moving = false;
+            uploaded = false;
+        }
+    }
+
+    /**
+     * Velocity for vertices written from now on, in world units per second.
+     * Stays in effect until changed; (0, 0) for geometry that doesn't move.
+     */
+    public void setVelocity(float vx, float vy) {
+        velocityX = vx;
+        velocityY = vy;
+    }
+
+    public void line(float x1, float y1, float x2, float y2, float width, int color) {
+        if (TacticalColors.alpha(color) == 0) return;
+        useColor(color);
+
+        Bucket bucket = bucket(GL11.GL_LINES, width, KIND_PLAIN);
+        bucket.ensureCapacity(2);
+        bucket.vertex(x1, y1, red, green, blue, alpha, velocityX, velocityY);
+        bucket.vertex(x2, y2, red, green, blue, alpha, velocityX, velocityY);
+    }
+
+    /**
+     * Dashed line. The pattern coordinates are distances along the line in
+     * dash periods (dash plus gap); giving both ends of a clipped line the
+     * coordinates of the full line keeps the dashes in place as it clips.
+     *
+     * @param flowing whether the dashes move from the first point towards
+     *                the second with {@link #setFlowOffset}
+     */
+    public void dashedLine(float x1, float y1, float s1, float x2, float y2, float s2,
+                           float width, int color, boolean flowing) {
+        dashedLine(x1, y1, s1, velocityX, velocityY, x2, y2, s2, velocityX, velocityY, width, color, flowing);
+    }
+
+    /**
+     * Dashed line whose ends move at velocities of their own instead of the
+     * one from {@link #setVelocity}, e.g. a line from a ship to a fixed point
+     * that should stretch rather than slide between rebuilds.
+     */
+    public void dashedLine(float x1, float y1, float s1, float vx1, float vy1,
+                           float x2, float y2, float s2, float vx2, float vy2,
+                           float width, int color, boolean flowing) {
+        if (TacticalColors.alpha(color) == 0) return;
+        useColor(color);
+
+        Bucket bucket = bucket(GL11.GL_LINES, width, flowing ? KIND_DASHED_FLOWING : KIND_DASHED);
+        bucket.ensureCapacity(2);
+        bucket.dashedVertex(x1, y1, s1, red, green, blue, alpha, vx1, vy1);
+        bucket.dashedVertex(x2, y2, s2, red, green, blue, alpha, vx2, vy2);
+    }
+
+    /** How far flowing dashes have moved along their lines, in dash periods. */
+    public void setFlowOffset(float periods) {
+        flowOffset = periods;
+    }
+
+    /**
+     * Ring or arc outline, anti-aliased, for {@link RingShader}.
+     *
+     * @param width     outline thickness in pixels
+     * @param pixelSize world units per pixel at the current zoom
+     * @param startAngle arc start in degrees, counterclockwise from +x
+     * @param spanAngle  arc length in degrees; 360 or more for a full ring
+     */
+    public void ring(float cx, float cy, float radius, float width, float pixelSize,
+                     float startAngle, float spanAngle, int color) {
+        if (TacticalColors.alpha(color) == 0 || spanAngle == 0f) return;
+        useColor(color);
+
+        float halfWidth = width * 0.5f;
+        float arcStart = (float) Math.toRadians(startAngle);
+        float arcSpan = Math.min(FULL_CIRCLE, (float) Math.toRadians(spanAngle));
+        if (arcSpan < 0f) {
+            arcStart += arcSpan;
+            arcSpan = -arcSpan;
+        }
+
+        // Room for the outline plus a pixel of anti-aliasing on each side
+        float pad = (halfWidth + 1f) * pixelSize;
+        float outer = radius + pad;
+        float inner = Math.max(0f, radius - pad);
+
+        Bucket bucket = bucket(GL11.GL_TRIANGLES, 0f, KIND_RING);
+        float screenOuter = outer / pixelSize;
+        if (screenOuter <= RING_QUAD_MAX_PIXELS) {
+            bucket.ensureCapacity(6);
+            ringQuad(bucket, cx, cy, radius, halfWidth, arcStart, arcSpan,
+                     cx - outer, cy - outer, cx + outer, cy - outer,
+                     cx + outer, cy + outer, cx - outer, cy + outer);
+            return;
+        }
+
+        // Band: sagitta of each piece's outer chord is about r * theta^2 / 8
+        int fullPieces = (int) Math.ceil(Math.PI * Math.sqrt(screenOuter / (2f * RING_BAND_SAG_PIXELS)));
+        int pieces = Math.max(arcSpan < FULL_CIRCLE ? 1 : 3,
+                              (int) Math.ceil(fullPieces * arcSpan / FULL_CIRCLE));
+        float pieceAngle = arcSpan / pieces;
+        float reach = outer / (float) Math.cos(pieceAngle * 0.5f);
+        bucket.ensureCapacity(pieces * 6);
+
+        int index = TacticalGeometry.indexForRadians(arcStart);
+        float prevCos = TacticalGeometry.cos(index);
+        float prevSin = TacticalGeometry.sin(index);
+        for (int i = 1; i <= pieces; i++) {
+            index = TacticalGeometry.indexForRadians(arcStart + pieceAngle * i);
+            float cos = TacticalGeometry.cos(index);
+            float sin = TacticalGeometry.sin(index);
+            ringQuad(bucket, cx, cy, radius, halfWidth, arcStart, arcSpan,
+                     cx + prevCos * inner, cy + prevSin * inner,
+                     cx + prevCos * reach, cy + prevSin * reach,
+                     cx + cos * reach, cy + sin * reach,
+                     cx + cos * inner, cy + sin * inner);
+            prevCos = cos;
+            prevSin = sin;
+        }
+    }
+
+    private void ringQuad(Bucket bucket, float cx, float cy, float radius, float halfWidth,
+                          float arcStart, float arcSpan, float x1, float y1, float x2, float y2,
+                          float x3, float y3, float x4, float y4) {
+        float vx = velocityX;
+        float vy = velocityY;
+        bucket.ringVertex(x1, y1, cx, cy, radius, halfWidth, arcStart, arcSpan, red, green, blue, alpha, vx, vy);
+        bucket.ringVertex(x2, y2, cx, cy, radius, halfWidth, arcStart, arcSpan, red, green, blue, alpha, vx, vy);
+        bucket.ringVertex(x3, y3, cx, cy, radius, halfWidth, arcStart, arcSpan, red, green, blue, alpha, vx, vy);
+        bucket.ringVertex(x1, y1, cx, cy, radius, halfWidth, arcStart, arcSpan, red, green, blue, alpha, vx, vy);
+        bucket.ringVertex(x3, y3, cx, cy, radius, halfWidth, arcStart, arcSpan, red, green, blue, alpha, vx, vy);
+        bucket.ringVertex(x4, y4, cx, cy, radius, halfWidth, arcStart, arcSpan, red, green, blue, alpha, vx, vy);
+    }
+
+    /**
+     * Line of text, top-left corner at (x, y). Characters outside
+     * {@link GlyphAtlas} draw as '?'; spaces only advance. Check
+     * {@link GlyphAtlas#isAvailable()} first.
+     *
+     * @param pixelSize world units per atlas pixel, e.g. the zoom for text
+     *                  drawn at the atlas's own size
+     */
+    public void text(float x, float y, char[] chars, int length, float pixelSize, int color) {
+        if (TacticalColors.alpha(color) == 0 || length == 0) return;
+        useColor(color);
+
+        Bucket bucket = bucket(GL11.GL_TRIANGLES, 0f, KIND_TEXT);
+        bucket.ensureCapacity(length * 6);
+        float penX = x;
+        for (int i = 0; i < length; i++) {
+            penX = glyph(bucket, chars[i], penX, y, pixelSize);
+        }
+    }
+
+    /** As {@link #text(float, float, char[], int, float, int)}, for a fixed string. */
+    public void text(float x, float y, String text, float pixelSize, int color) {
+        int length = text.length();
+        if (TacticalColors.alpha(color) == 0 || length == 0) return;
+        useColor(color);
+
+        Bucket bucket = bucket(GL11.GL_TRIANGLES, 0f, KIND_TEXT);
+        bucket.ensureCapacity(length * 6);
+        float penX = x;
+        for (int i = 0; i < length; i++) {
+            penX = glyph(bucket, text.charAt(i), penX, y, pixelSize);
+        }
+    }
+
+    /** Writes one glyph's quad and returns where the next one starts. */
+    private float glyph(Bucket bucket, char c, float x, float y, float pixelSize) {
+        float advance = GlyphAtlas.getAdvance(c) * pixelSize;
+        if (c == ' ') return x + advance;
+
+        float right = x + GlyphAtlas.getCellWidth() * pixelSize;
+        float bottom = y - GlyphAtlas.getLineHeight() * pixelSize;
+        float u0 = GlyphAtlas.getTexCoord(c, 0);
+        float v0 = GlyphAtlas.getTexCoord(c, 1);
+        float u1 = GlyphAtlas.getTexCoord(c, 2);
+        float v1 = GlyphAtlas.getTexCoord(c, 3);
+        bucket.textVertex(x, y, u0, v0, red, green, blue, alpha);
+        bucket.textVertex(right, y, u1, v0, red, green, blue, alpha);
+        bucket.textVertex(right, bottom, u1, v1, red, green, blue, alpha);
+        bucket.textVertex(x, y, u0, v0, red, green, blue, alpha);
+        bucket.textVertex(right, bottom, u1, v1, red, green, blue, alpha);
+        bucket.textVertex(x, bottom, u0, v1, red, green, blue, alpha);
+        return x + advance;
+    }
+
+    public void point(float x, float y, float size, int color) {
+        if (TacticalColors.alpha(color) == 0) return;
+        useColor(color);
+
+        Bucket bucket = bucket(GL11.GL_POINTS, size, KIND_PLAIN);
+        bucket.ensureCapacity(1);
+        bucket.vertex(x, y, red, green, blue, alpha, velocityX, velocityY);
+    }
+
+    public void triangle(float x1, float y1, float x2, float y2, float x3, float y3, int color) {
+        if (TacticalColors.alpha(color) == 0) return;
+        useColor(color);
+
+        Bucket bucket = bucket(GL11.GL_TRIANGLES, 0f, KIND_PLAIN);
+        bucket.ensureCapacity(3);
+        bucket.vertex(x1, y1, red, green, blue, alpha, velocityX, velocityY);
+        bucket.vertex(x2, y2, red, green, blue, alpha, velocityX, velocityY);
+        bucket.vertex(x3, y3, red, green, blue, alpha, velocityX, velocityY);
+    }
+
+    /**
+     * Filled convex quad, corners given in winding order.
+     */
+    public void quad(float x1, float y1, float x2, float y2, float x3, float y3,
+                     float x4, float y4, int color) {
+        triangle(x1, y1, x2, y2, x3, y3, color);
+        triangle(x1, y1, x3, y3, x4, y4, color);
+    }
+
+    /**
+     * Draws everything collected since the last flush and resets the batch.
+     * Expects blending to be set up and texturing disabled by the caller.
+     */
+    public void flush(RenderSink sink) {
+        sink.beginBatch();
+        draw(sink);
+        sink.endBatch();
+        clear();
+    }
+
+    /**
+     * Draws everything collected since the last clear and keeps it, so a
+     * batch can be shown for several frames. Must be called between the
+     * sink's beginBatch and endBatch.
+     */
+    public void draw(RenderSink sink) {
+        for (int pass = 0; pass < DRAW_PASSES; pass++) {
+            drawPass(sink, pass);
+        }
+    }
+
+    /**
+     * Draws one pass of {@link #draw}. Drawing several batches pass by pass
+     * layers them as one batch would, and keeps like draws next to each
+     * other so the sink changes state less.
+     */
+    public void drawPass(RenderSink sink, int pass) {
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets[i];
+            if (bucket.vertexCount == 0 || drawOrder(bucket) != pass) continue;
+
+            if (bucket.kind == KIND_PLAIN) {
+                sink.drawVertices(bucket.mode, bucket.width, bucket.upload(), bucket.vertexCount);
+            } else if (bucket.kind == KIND_RING) {
+                sink.drawRings(bucket.upload(), bucket.vertexCount);
+            } else if (bucket.kind == KIND_TEXT) {
+                sink.drawText(bucket.upload(), bucket.vertexCount);
+            } else {
+                float offset = bucket.kind == KIND_DASHED_FLOWING ? flowOffset : 0f;
+                sink.drawDashedLines(bucket.width, bucket.upload(), bucket.vertexCount, offset);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i].clear();
+        }
+        velocityX = 0f;
+        velocityY = 0f;
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i < bucketCount; i++) {
+            if (buckets[i].vertexCount > 0) return false;
+        }
+        return true;
+    }
+
+    /** Moves every vertex written with a velocity along it by the given time. */
+    public void extrapolate(float seconds) {
+        if (seconds == 0f) return;
+
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets[i];
+            if (!bucket.moving) continue;
+
+            float[] data = bucket.data;
+            float[] velocities = bucket.velocities;
+            int stride = bucket.stride;
+            for (int v = 0; v < bucket.vertexCount; v++) {
+                int at = v * stride;
+                data[at] += velocities[v * 2] * seconds;
+                data[at + 1] += velocities[v * 2 + 1] * seconds;
+            }
+            bucket.uploaded = false;
+        }
+    }
+
+    private void useColor(int color) {
+        if (color == lastColor) return;
+        lastColor = color;
+        red = TacticalColors.redf(color);
+        green = TacticalColors.greenf(color);
+        blue = TacticalColors.bluef(color);
+        alpha = TacticalColors.alphaf(color);
+    }
+
+    private Bucket bucket(int mode, float width, int kind) {
+        if (lastBucket != null && lastBucket.mode == mode && lastBucket.width == width
+            && lastBucket.kind == kind) {
+            return lastBucket;
+        }
+
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets[i];
+            if (bucket.mode == mode && bucket.width == width && bucket.kind == kind) {
+                lastBucket = bucket;
+                return bucket;
+            }
+        }
+
+        if (bucketCount == buckets.length) {
+            buckets = Arrays.copyOf(buckets, bucketCount * 2);
+        }
+
+        // Insert keeping draw order
+        Bucket created = new Bucket(mode, width, kind);
+        int insertAt = bucketCount;
+        while (insertAt > 0 && compare(created, buckets[insertAt - 1]) < 0) {
+            buckets[insertAt] = buckets[insertAt - 1];
+            insertAt--;
+        }
+        buckets[insertAt] = created;
+        bucketCount++;
+        lastBucket = created;
+        return created;
+    }
+
+    private static int compare(Bucket a, Bucket b) {
+        int orderA = drawOrder(a);
+        int orderB = drawOrder(b);
+        if (orderA != orderB) return orderA - orderB;
+        if (a.width != b.width) return Float.compare(a.width, b.width);
+        return a.kind - b.kind;
+    }
+
+    private static int drawOrder(Bucket bucket) {
+        if (bucket.kind == KIND_RING) return 1; // Outlines, between fills and lines
+        if (bucket.kind == KIND_TEXT) return 4; // On top of everything
+        switch (bucket.mode) {
+            case GL11.GL_TRIANGLES: return 0;
+            case GL11.GL_LINES: return 2;
+            default: return 3;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.Global;
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The mod's settings, from the "tacticalOverhaul" block of
+ * data/config/settings.json, read once by
+ * {@link TacticalOverhaulModPlugin#onApplicationLoad()}.
+ *
+ * Holds the overlay opacity and the list of {@link OverlayPreset}s the
+ * player cycles through in combat. Immutable; {@link #get()} returns the
+ * loaded settings, or built-in defaults (a single {@link OverlayPreset#FULL})
+ * if nothing was loaded or the block couldn't be read.
+ */
+public final class TacticalSettings {
+
+    private static final String KEY = "tacticalOverhaul";
+
+    private static final Logger log = Global.getLogger(TacticalSettings.class);
+
+    private static final TacticalSettings DEFAULTS =
+        new TacticalSettings(0.4f, new OverlayPreset[] {OverlayPreset.FULL}, 0);
+
+    private static volatile TacticalSettings current = DEFAULTS;
+
+    private final float overlayAlpha;
+    private final OverlayPreset[] presets;
+    private final int defaultPreset;
+
+    private TacticalSettings(float overlayAlpha, OverlayPreset[] presets, int defaultPreset) {
+        this.overlayAlpha = overlayAlpha;
+        this.presets = presets;
+        this.defaultPreset = defaultPreset;
+    }
+
+    public static TacticalSettings get() {
+        return current;
+    }
+
+    /** Reads the settings block; on any problem logs it and keeps the defaults. */
+    public static void load() {
+        try {
+            JSONObject json = Global.getSettings().getJSONObject(KEY);
+            current = fromJson(json);
+            log.info("Loaded " + current.presets.length + " overlay presets");
+        } catch (JSONException | RuntimeException e) {
+            log.warn("Couldn't read \"" + KEY + "\" from settings.json, using defaults: " + e.getMessage());
+            current = DEFAULTS;
+        }
+    }
+
+    static TacticalSettings fromJson(JSONObject json) throws JSONException {
+        float overlayAlpha = (float) json.optDouble("overlayAlpha", DEFAULTS.overlayAlpha);
+        if (!(overlayAlpha > 0f && overlayAlpha <= 1f)) {
+            throw new JSONException("overlayAlpha must be in (0, 1]");
+        }
+
+        OverlayPreset[] presets = DEFAULTS.presets;
+        JSONArray list = json.optJSONArray("presets");
+        if (list != null && list.length() > 0) {
+            presets = new OverlayPreset[list.length()];
+            for (int i = 0; i < presets.length; i++) {
+                presets[i] = OverlayPreset.fromJson(list.getJSONObject(i), OverlayPreset.FULL);
+            }
+        }
+
+        String defaultName = json.optString("defaultPreset", presets[0].name);
+        int defaultPreset = -1;
+        for (int i = 0; i < presets.length; i++) {
+            if (presets[i].name.equalsIgnoreCase(defaultName)) {
+                defaultPreset = i;
+                break;
+            }
+        }
+        if (defaultPreset < 0) throw new JSONException("No preset named " + defaultName);
+
+        return new TacticalSettings(overlayAlpha, presets, defaultPreset);
+    }
+
+    /** Opacity of the overlay once faded in, 0-1. */
+    public float getOverlayAlpha() {
+        return overlayAlpha;
+    }
+
+    public int getPresetCount() {
+        return presets.length;
+    }
+
+    public OverlayPreset getPreset(int index) {
+        return presets[index];
+    }
+
+    /** Preset combat starts with. */
+    public int getDefaultPreset() {
+        return defaultPreset;
+    }
+}
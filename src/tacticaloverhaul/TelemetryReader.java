@@ -0,0 +1,214 @@
+package tacticaloverhaul;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads a file written by {@link TelemetryRecorder}, oldest record first.
+ *
+ * Step through frames with {@link #nextFrame()}; the per-ship accessors
+ * then describe the current frame. Ship records met along the way are
+ * remembered, so {@link #getShipName} and friends work for any id seen so
+ * far. A file still being recorded can be read; the reader sees the records
+ * that were complete when it was opened.
+ *
+ * Not used in game; meant for after-action tools and the benchmark.
+ */
+public class TelemetryReader implements AutoCloseable {
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long startTime;
+    private final long recordsWritten;
+
+    // Position in the ring and records left to read
+    private int offset;
+    private int remaining;
+
+    // Current frame
+    private float time = 0f;
+    private int shipCount = 0;
+    private int entries = 0; // Absolute position of the first ship entry
+
+    // Ship records by id
+    private String[] names = new String[256];
+    private String[] variants = new String[256];
+    private int[] owners = new int[256];
+    private int[] hullSizes = new int[256];
+
+    public TelemetryReader(File source) throws IOException {
+        file = new RandomAccessFile(source, "r");
+        try {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.limit() < TelemetryRecorder.HEADER_SIZE || buffer.getInt(0) != TelemetryRecorder.MAGIC) {
+                throw new IOException(source + " is not a telemetry file");
+            }
+            short version = buffer.getShort(4);
+            if (version != TelemetryRecorder.VERSION) {
+                throw new IOException(source + " has telemetry format version " + version
+                                      + ", expected " + TelemetryRecorder.VERSION);
+            }
+            capacity = buffer.getInt(TelemetryRecorder.OFFSET_CAPACITY);
+            if (TelemetryRecorder.HEADER_SIZE + (long) capacity > buffer.limit()) {
+                throw new IOException(source + " is truncated");
+            }
+            offset = buffer.getInt(TelemetryRecorder.OFFSET_OLDEST);
+            remaining = buffer.getInt(TelemetryRecorder.OFFSET_LIVE);
+            recordsWritten = buffer.getLong(TelemetryRecorder.OFFSET_WRITTEN);
+            startTime = buffer.getLong(TelemetryRecorder.OFFSET_START_TIME);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /** Wall-clock time recording started, in epoch milliseconds. */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /** Records written over the whole recording, including ones since overwritten. */
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    /**
+     * Moves to the next frame, reading any ship records before it.
+     *
+     * @return false once there are no more frames
+     */
+    public boolean nextFrame() {
+        while (remaining > 0) {
+            if (offset + 4 > capacity || buffer.getInt(TelemetryRecorder.HEADER_SIZE + offset) == 0) {
+                offset = 0;
+            }
+            int at = TelemetryRecorder.HEADER_SIZE + offset;
+            int length = buffer.getInt(at);
+            byte type = buffer.get(at + 4);
+            offset += length;
+            remaining--;
+
+            if (type == TelemetryRecorder.RECORD_SHIP) {
+                readShip(at + 5);
+            } else if (type == TelemetryRecorder.RECORD_FRAME) {
+                time = buffer.getFloat(at + 5);
+                shipCount = buffer.getShort(at + 9) & 0xFFFF;
+                entries = at + 11;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Combat time of the current frame, in seconds. */
+    public float getTime() {
+        return time;
+    }
+
+    public int getShipCount() {
+        return shipCount;
+    }
+
+    public int getShipId(int index) {
+        return buffer.getShort(entry(index)) & 0xFFFF;
+    }
+
+    public float getX(int index) {
+        return buffer.getFloat(entry(index) + 2);
+    }
+
+    public float getY(int index) {
+        return buffer.getFloat(entry(index) + 6);
+    }
+
+    public float getVelocityX(int index) {
+        return buffer.getShort(entry(index) + 10);
+    }
+
+    public float getVelocityY(int index) {
+        return buffer.getShort(entry(index) + 12);
+    }
+
+    /** Facing in degrees, 0-360. */
+    public float getFacing(int index) {
+        return buffer.getChar(entry(index) + 14) * (360f / 65536f);
+    }
+
+    public float getFluxLevel(int index) {
+        return (buffer.get(entry(index) + 16) & 0xFF) / 255f;
+    }
+
+    public float getHullLevel(int index) {
+        return (buffer.get(entry(index) + 17) & 0xFF) / 255f;
+    }
+
+    /** CombatAssignmentType ordinal of the ship's assignment, or -1 for none. */
+    public int getAssignment(int index) {
+        return (buffer.get(entry(index) + 18) & 0xFF) - 1;
+    }
+
+    /** {@link BattleSnapshot} flags of the ship in this frame. */
+    public int getFlags(int index) {
+        return buffer.get(entry(index) + 19) & 0xFF;
+    }
+
+    /** Ship name, or null if its ship record hasn't been read. */
+    public String getShipName(int id) {
+        return id < names.length ? names[id] : null;
+    }
+
+    public String getShipVariant(int id) {
+        return id < variants.length ? variants[id] : null;
+    }
+
+    public int getShipOwner(int id) {
+        return id < owners.length ? owners[id] : -1;
+    }
+
+    /** ShipAPI.HullSize ordinal of the ship. */
+    public int getShipHullSize(int id) {
+        return id < hullSizes.length ? hullSizes[id] : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int entry(int index) {
+        return entries + index * TelemetryRecorder.SHIP_ENTRY_SIZE;
+    }
+
+    private void readShip(int at) {
+        int id = buffer.getShort(at) & 0xFFFF;
+        if (id >= names.length) {
+            int newSize = Math.max(id + 1, names.length * 2);
+            names = Arrays.copyOf(names, newSize);
+            variants = Arrays.copyOf(variants, newSize);
+            owners = Arrays.copyOf(owners, newSize);
+            hullSizes = Arrays.copyOf(hullSizes, newSize);
+        }
+        owners[id] = buffer.get(at + 2);
+        hullSizes[id] = buffer.get(at + 3);
+        int nameAt = at + 4;
+        names[id] = readAscii(nameAt);
+        variants[id] = readAscii(nameAt + 2 + (buffer.getShort(nameAt) & 0xFFFF));
+    }
+
+    private String readAscii(int at) {
+        int length = buffer.getShort(at) & 0xFFFF;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer.get(at + 2 + i);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,335 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.combat.ShipAPI;
+import com.fs.starfarer.api.combat.ShipVariantAPI;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Opt-in battle recorder for after-action reviews.
+ *
+ * Each tick appends one compact frame with every captured ship's position,
+ * velocity, facing, flux, hull and current assignment to a memory-mapped
+ * ring file. The file is sized and mapped once when recording starts;
+ * after that the game thread only writes into the mapping, so recording
+ * neither allocates (beyond a ship's first appearance) nor waits on the
+ * disk, which the OS writes back in its own time. When the ring is full
+ * the oldest records are overwritten.
+ *
+ * Format, version {@value #VERSION}, little-endian:
+ * <pre>
+ * header, {@value #HEADER_SIZE} bytes:
+ *   int magic "TOTL", short version, short header size,
+ *   int ring capacity, int oldest record offset, int next write offset,
+ *   int live record count, long records written, long start time (epoch ms)
+ * ring: records back to back, each
+ *   int length (whole record), byte type, payload
+ *   a length of 0 means the rest of the ring is unused, continue at 0
+ * SHIP record: short id, byte owner, byte hull size ordinal,
+ *   short length + ASCII name, short length + ASCII variant id
+ * FRAME record: float combat time, short ship count, then per ship
+ *   {@value #SHIP_ENTRY_SIZE} bytes: short id, float x, float y,
+ *   short vx, short vy (su/s), char facing (1/65536 turn),
+ *   byte flux, byte hull (0-255 = 0-100%),
+ *   byte assignment (CombatAssignmentType ordinal + 1, 0 = none),
+ *   byte {@link BattleSnapshot} flags
+ * </pre>
+ * A ship's SHIP record comes before its first frame, and all known ships
+ * are written again each time the ring wraps, so a reader starting from
+ * the oldest record can name most ships. Offsets are relative to the start
+ * of the ring. {@link TelemetryReader} reads the format.
+ */
+public class TelemetryRecorder {
+
+    public static final int MAGIC = 0x4C544F54; // "TOTL" in file order
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+
+    public static final byte RECORD_SHIP = 1;
+    public static final byte RECORD_FRAME = 2;
+    public static final int SHIP_ENTRY_SIZE = 20;
+
+    // Header field offsets
+    static final int OFFSET_CAPACITY = 8;
+    static final int OFFSET_OLDEST = 12;
+    static final int OFFSET_WRITE = 16;
+    static final int OFFSET_LIVE = 20;
+    static final int OFFSET_WRITTEN = 24;
+    static final int OFFSET_START_TIME = 32;
+
+    // 256 MB: about seven minutes of a 500-ship battle at 60 frames a second
+    private static final int DEFAULT_CAPACITY = 256 << 20;
+    private static final int MAX_NAME_LENGTH = 64;
+    private static final String DIRECTORY = "saves/common/tacticaloverhaul";
+
+    private static final Logger log = Global.getLogger(TelemetryRecorder.class);
+
+    private final int capacity;
+
+    private RandomAccessFile file = null;
+    private MappedByteBuffer buffer = null;
+    private String path = null;
+
+    // Ring state, mirrored into the header after every record
+    private int writeOffset = 0;
+    private int oldestOffset = 0;
+    private int liveRecords = 0;
+    private long recordsWritten = 0L;
+    private long framesWritten = 0L;
+
+    // Ship ids for the battle; ids index shipsById
+    private final IdentityHashMap<ShipAPI, Integer> idOf = new IdentityHashMap<>();
+    private ShipAPI[] shipsById = new ShipAPI[256];
+    private int shipCount = 0;
+
+    // Assignment type ordinal + 1 per ship id, refreshed each frame
+    private byte[] assignmentById = new byte[256];
+
+    public TelemetryRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    TelemetryRecorder(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public boolean isRecording() {
+        return buffer != null;
+    }
+
+    /** File being written, or null when not recording. */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Starts recording to a new file in the common saves folder.
+     *
+     * @return false if the file couldn't be created or mapped; the reason is logged
+     */
+    public boolean start() {
+        return start(new File(DIRECTORY, "telemetry-" + System.currentTimeMillis() + ".bin"));
+    }
+
+    boolean start(File target) {
+        if (isRecording()) stop();
+
+        try {
+            File parent = target.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Can't create " + parent);
+            }
+            file = new RandomAccessFile(target, "rw");
+            file.setLength(HEADER_SIZE + (long) capacity);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Telemetry recording unavailable: " + e);
+            closeFile();
+            return false;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        path = target.getPath();
+
+        writeOffset = 0;
+        oldestOffset = 0;
+        liveRecords = 0;
+        recordsWritten = 0L;
+        framesWritten = 0L;
+        idOf.clear();
+        Arrays.fill(shipsById, 0, shipCount, null);
+        shipCount = 0;
+
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putShort(6, (short) HEADER_SIZE);
+        buffer.putInt(OFFSET_CAPACITY, capacity);
+        buffer.putLong(OFFSET_START_TIME, System.currentTimeMillis());
+        writeHeader();
+
+        log.info("Recording battle telemetry to " + path);
+        return true;
+    }
+
+    /** Stops recording and closes the file. Does nothing if not recording. */
+    public void stop() {
+        if (!isRecording()) return;
+
+        log.info("Telemetry: " + framesWritten + " frames written to " + path);
+        closeFile();
+        idOf.clear();
+        Arrays.fill(shipsById, 0, shipCount, null);
+        shipCount = 0;
+    }
+
+    /** Appends a frame for the ships in the snapshot. */
+    public void record(BattleSnapshot s, AssignmentTracker assignments) {
+        if (!isRecording()) return;
+
+        int n = s.shipCount;
+        for (int i = 0; i < n; i++) {
+            idFor(s.ships[i]);
+        }
+
+        // Assignments by ship id; ships missing from the map aren't in the snapshot
+        Arrays.fill(assignmentById, 0, shipCount, (byte) 0);
+        for (int i = 0; i < assignments.size(); i++) {
+            Integer id = idOf.get(assignments.getShip(i));
+            if (id != null) {
+                assignmentById[id] = (byte) (assignments.getType(i).ordinal() + 1);
+            }
+        }
+
+        int length = 4 + 1 + 4 + 2 + n * SHIP_ENTRY_SIZE;
+        if (length > capacity / 2) return; // Absurd battle size for this ring; skip rather than thrash
+
+        int at = reserve(length, true);
+        MappedByteBuffer b = buffer;
+        b.position(HEADER_SIZE + at);
+        b.putInt(length);
+        b.put(RECORD_FRAME);
+        b.putFloat(s.time);
+        b.putShort((short) n);
+        for (int i = 0; i < n; i++) {
+            int id = idOf.get(s.ships[i]);
+            float facing = s.facing[i] % 360f;
+            if (facing < 0f) facing += 360f;
+            b.putShort((short) id);
+            b.putFloat(s.x[i]);
+            b.putFloat(s.y[i]);
+            b.putShort(clampShort(s.vx[i]));
+            b.putShort(clampShort(s.vy[i]));
+            b.putChar((char) (int) (facing * (65536f / 360f)));
+            b.put(unitByte(s.flux[i]));
+            b.put(unitByte(s.hull[i]));
+            b.put(assignmentById[id]);
+            b.put((byte) s.flags[i]);
+        }
+        commit(at, length);
+        framesWritten++;
+    }
+
+    private int idFor(ShipAPI ship) {
+        Integer known = idOf.get(ship);
+        if (known != null) return known;
+
+        int id = shipCount++;
+        if (id == shipsById.length) {
+            shipsById = Arrays.copyOf(shipsById, id * 2);
+            assignmentById = Arrays.copyOf(assignmentById, id * 2);
+        }
+        shipsById[id] = ship;
+        idOf.put(ship, id);
+        writeShip(id);
+        return id;
+    }
+
+    private void writeShip(int id) {
+        ShipAPI ship = shipsById[id];
+        String name = ship.getName();
+        ShipVariantAPI variant = ship.getVariant();
+        String variantId = variant != null ? variant.getHullVariantId() : null;
+        int nameLength = name == null ? 0 : Math.min(name.length(), MAX_NAME_LENGTH);
+        int variantLength = variantId == null ? 0 : Math.min(variantId.length(), MAX_NAME_LENGTH);
+
+        int length = 4 + 1 + 2 + 1 + 1 + 2 + nameLength + 2 + variantLength;
+        int at = reserve(length, false);
+        MappedByteBuffer b = buffer;
+        b.position(HEADER_SIZE + at);
+        b.putInt(length);
+        b.put(RECORD_SHIP);
+        b.putShort((short) id);
+        b.put((byte) ship.getOwner());
+        b.put((byte) ship.getHullSize().ordinal());
+        putAscii(b, name, nameLength);
+        putAscii(b, variantId, variantLength);
+        commit(at, length);
+    }
+
+    /**
+     * Ring offset for a record of this length, wrapping and dropping the
+     * oldest records it would overwrite. A wrap before a frame writes every
+     * known ship again at the start of the new lap.
+     */
+    private int reserve(int length, boolean frame) {
+        if (writeOffset + length > capacity) {
+            // Records left past this point are cut off by the wrap marker
+            while (liveRecords > 0 && oldestOffset >= writeOffset) {
+                dropOldest();
+            }
+            if (capacity - writeOffset >= 4) buffer.putInt(HEADER_SIZE + writeOffset, 0);
+            writeOffset = 0;
+            if (frame) {
+                for (int id = 0; id < shipCount; id++) {
+                    writeShip(id);
+                }
+            }
+        }
+
+        int end = writeOffset + length;
+        while (liveRecords > 0 && oldestOffset >= writeOffset && oldestOffset < end) {
+            dropOldest();
+        }
+        if (liveRecords == 0) oldestOffset = writeOffset;
+        return writeOffset;
+    }
+
+    private void dropOldest() {
+        oldestOffset += buffer.getInt(HEADER_SIZE + oldestOffset);
+        liveRecords--;
+        if (oldestOffset + 4 > capacity || buffer.getInt(HEADER_SIZE + oldestOffset) == 0) {
+            oldestOffset = 0;
+        }
+    }
+
+    private void commit(int at, int length) {
+        writeOffset = at + length;
+        liveRecords++;
+        recordsWritten++;
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(OFFSET_OLDEST, oldestOffset);
+        buffer.putInt(OFFSET_WRITE, writeOffset);
+        buffer.putInt(OFFSET_LIVE, liveRecords);
+        buffer.putLong(OFFSET_WRITTEN, recordsWritten);
+    }
+
+    private void closeFile() {
+        buffer = null;
+        path = null;
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.warn("Failed to close telemetry file", e);
+            }
+            file = null;
+        }
+    }
+
+    private static void putAscii(MappedByteBuffer b, String text, int length) {
+        b.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            b.put((byte) (c < 128 ? c : '?'));
+        }
+    }
+
+    private static short clampShort(float value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+    }
+
+    private static byte unitByte(float value) {
+        return (byte) (int) (Math.max(0f, Math.min(1f, value)) * 255f + 0.5f);
+    }
+}
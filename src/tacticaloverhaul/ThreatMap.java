@@ -0,0 +1,191 @@
+package tacticaloverhaul;
+
+import com.fs.starfarer.api.Global;
+import org.apache.log4j.Logger;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Enemy threat heat map: a grid over the whole map holding, per cell, the
+ * summed DPS of every hostile weapon that reaches the cell's center.
+ *
+ * The grid is computed on a background worker. The game thread hands it an
+ * immutable {@link Input} a few times a second and picks up finished
+ * frames, already colored as RGBA texels, whenever it draws; neither side
+ * ever waits on the other. Frames come from a pool of three direct
+ * buffers, so the worker can fill one while another waits to be uploaded
+ * and the third is recycled. An input that arrives while the worker is busy
+ * replaces any older one still waiting.
+ *
+ * The worker thread is started on the first submit and exits after a few
+ * idle seconds, so a finished battle doesn't leave it behind.
+ */
+public class ThreatMap {
+
+    public static final int GRID_SIZE = 128; // Cells per side, power of two for the texture
+
+    // Threat at which a cell reaches half intensity, in DPS
+    private static final float HALF_INTENSITY_DPS = 1200f;
+    private static final int MAX_ALPHA = 150;
+
+    private static final long IDLE_EXIT_NANOS = 5_000_000_000L;
+    private static final long IDLE_PARK_NANOS = 500_000_000L;
+
+    private static final Logger log = Global.getLogger(ThreatMap.class);
+
+    /**
+     * Hostile ships and their weapons for one update. Built on the game
+     * thread and never changed afterwards.
+     */
+    public static final class Input {
+        final float mapMinX;
+        final float mapMinY;
+        final float mapWidth;
+        final float mapHeight;
+        final int count;
+        final float[] x;
+        final float[] y;
+        final ShipMetadataCache.Metadata[] weapons;
+
+        public Input(float mapMinX, float mapMinY, float mapWidth, float mapHeight,
+                     int count, float[] x, float[] y, ShipMetadataCache.Metadata[] weapons) {
+            this.mapMinX = mapMinX;
+            this.mapMinY = mapMinY;
+            this.mapWidth = mapWidth;
+            this.mapHeight = mapHeight;
+            this.count = count;
+            this.x = x;
+            this.y = y;
+            this.weapons = weapons;
+        }
+    }
+
+    private final AtomicReference<Input> pending = new AtomicReference<>();
+    private final AtomicReference<ByteBuffer> ready = new AtomicReference<>();
+    private final ArrayBlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(3);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Thread worker = null;
+
+    // Worker-only scratch
+    private final float[] grid = new float[GRID_SIZE * GRID_SIZE];
+
+    public ThreatMap() {
+        for (int i = 0; i < 3; i++) {
+            free.add(BufferUtils.createByteBuffer(GRID_SIZE * GRID_SIZE * 4));
+        }
+    }
+
+    /** Queues an update, replacing one not yet started. Never blocks. */
+    public void submit(Input input) {
+        pending.set(input);
+        if (running.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::work, "TacticalOverhaul-ThreatMap");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            worker = thread;
+            thread.start();
+        } else {
+            Thread thread = worker;
+            if (thread != null) LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * The newest finished frame, RGBA, GRID_SIZE x GRID_SIZE texels with
+     * row 0 at the bottom of the map, or null if nothing new is ready.
+     * Hand it back with {@link #recycle} once uploaded.
+     */
+    public ByteBuffer takeFrame() {
+        return ready.getAndSet(null);
+    }
+
+    public void recycle(ByteBuffer frame) {
+        frame.clear();
+        free.offer(frame);
+    }
+
+    /** Stops the worker once its current update is done and drops queued work. */
+    public void shutdown() {
+        pending.set(null);
+        Thread thread = worker;
+        if (thread != null) thread.interrupt();
+    }
+
+    private void work() {
+        long idleSince = System.nanoTime();
+        try {
+            while (true) {
+                Input input = pending.getAndSet(null);
+                if (input == null) {
+                    if (Thread.interrupted() || System.nanoTime() - idleSince > IDLE_EXIT_NANOS) {
+                        // Exit unless a submit slipped in after the check
+                        running.set(false);
+                        if (pending.get() == null || !running.compareAndSet(false, true)) return;
+                        continue;
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                ByteBuffer frame = free.take();
+                compute(input, frame);
+                ByteBuffer replaced = ready.getAndSet(frame);
+                if (replaced != null) recycle(replaced);
+                idleSince = System.nanoTime();
+            }
+        } catch (InterruptedException e) {
+            running.set(false);
+        } catch (RuntimeException e) {
+            running.set(false);
+            log.warn("Threat map worker stopped", e);
+        }
+    }
+
+    private void compute(Input input, ByteBuffer frame) {
+        float[] g = grid;
+        Arrays.fill(g, 0f);
+
+        float cellWidth = input.mapWidth / GRID_SIZE;
+        float cellHeight = input.mapHeight / GRID_SIZE;
+
+        for (int s = 0; s < input.count; s++) {
+            ShipMetadataCache.Metadata weapons = input.weapons[s];
+            float reach = weapons.maxRange;
+            if (reach <= 0f) continue;
+
+            float sx = input.x[s];
+            float sy = input.y[s];
+            int minCol = Math.max(0, (int) ((sx - reach - input.mapMinX) / cellWidth));
+            int maxCol = Math.min(GRID_SIZE - 1, (int) ((sx + reach - input.mapMinX) / cellWidth));
+            int minRow = Math.max(0, (int) ((sy - reach - input.mapMinY) / cellHeight));
+            int maxRow = Math.min(GRID_SIZE - 1, (int) ((sy + reach - input.mapMinY) / cellHeight));
+
+            for (int row = minRow; row <= maxRow; row++) {
+                float dy = input.mapMinY + (row + 0.5f) * cellHeight - sy;
+                for (int col = minCol; col <= maxCol; col++) {
+                    float dx = input.mapMinX + (col + 0.5f) * cellWidth - sx;
+                    float distSq = dx * dx + dy * dy;
+                    if (distSq > reach * reach) continue;
+                    g[row * GRID_SIZE + col] += weapons.getDpsAt((float) Math.sqrt(distSq));
+                }
+            }
+        }
+
+        // Soft saturation keeps colors comparable between updates
+        frame.clear();
+        for (int i = 0; i < g.length; i++) {
+            float intensity = g[i] / (g[i] + HALF_INTENSITY_DPS);
+            frame.put((byte) 255)
+                 .put((byte) (200 - (int) (170 * intensity)))
+                 .put((byte) 40)
+                 .put((byte) (int) (MAX_ALPHA * intensity));
+        }
+        frame.flip();
+    }
+}
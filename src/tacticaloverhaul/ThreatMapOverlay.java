@@ -0,0 +1,92 @@
+package tacticaloverhaul;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Draws a {@link ThreatMap} as one textured quad over the map.
+ *
+ * The texture is created once and kept for the session; each finished
+ * frame from the map's worker is copied in with glTexSubImage2D the next
+ * time the overlay is drawn, then its buffer goes back to the map. Linear
+ * filtering smooths the coarse grid.
+ *
+ * Only the map whose frame is in the texture is remembered. It is released
+ * when its battle ends or its overlay is cleaned up, and dropped when
+ * another battle's map is first drawn, so the last battle's map and buffers
+ * aren't kept alive and a new battle never shows old data.
+ */
+public final class ThreatMapOverlay {
+
+    private static int textureId = 0;
+
+    // Map whose frame is in the texture; null between battles
+    private static ThreatMap shownMap = null;
+
+    private ThreatMapOverlay() {
+    }
+
+    /**
+     * Uploads the newest frame, if any, and draws the texture over the given
+     * world rectangle. Leaves GL_TEXTURE_2D disabled.
+     */
+    public static void render(ThreatMap map, float minX, float minY, float width, float height, float alpha) {
+        if (shownMap != map) {
+            shownMap = null;
+        }
+        if (textureId == 0) {
+            textureId = createTexture();
+        }
+
+        ByteBuffer frame = map.takeFrame();
+        if (frame != null) {
+            GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureId);
+            GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, 0, 0, ThreatMap.GRID_SIZE, ThreatMap.GRID_SIZE,
+                                 GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, frame);
+            map.recycle(frame);
+            shownMap = map;
+        }
+        if (shownMap != map) return;
+
+        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureId);
+        GL11.glColor4f(1f, 1f, 1f, alpha);
+
+        GL11.glBegin(GL11.GL_QUADS);
+        GL11.glTexCoord2f(0f, 0f);
+        GL11.glVertex2f(minX, minY);
+        GL11.glTexCoord2f(1f, 0f);
+        GL11.glVertex2f(minX + width, minY);
+        GL11.glTexCoord2f(1f, 1f);
+        GL11.glVertex2f(minX + width, minY + height);
+        GL11.glTexCoord2f(0f, 1f);
+        GL11.glVertex2f(minX, minY + height);
+        GL11.glEnd();
+
+        GL11.glDisable(GL11.GL_TEXTURE_2D);
+    }
+
+    /** Forgets the map if its frame is the one in the texture. */
+    public static void release(ThreatMap map) {
+        if (shownMap == map) {
+            shownMap = null;
+        }
+    }
+
+    private static int createTexture() {
+        int size = ThreatMap.GRID_SIZE;
+        ByteBuffer empty = BufferUtils.createByteBuffer(size * size * 4);
+
+        int id = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, id);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL11.GL_CLAMP);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL11.GL_CLAMP);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, size, size, 0,
+                          GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, empty);
+        return id;
+    }
+}